@@ -0,0 +1,106 @@
+package com.rasel.bench;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rasel.server.db.ChatMessage;
+import com.rasel.server.db.Codecs;
+import com.rasel.server.db.Group;
+import com.rasel.server.db.GroupManager;
+import com.rasel.server.db.User;
+
+/**
+ * Encoding chat messages, groups and member lists with the registered
+ * {@link Codecs}, in JSON and in the binary format.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Messages {
+
+        @Param({ "SHORT", "PASTE_10K" })
+        public Payloads payload;
+
+        ChatMessage message;
+
+        @Setup
+        public void setUp() throws Exception {
+            User sender = new User("alice", "secret");
+            Group group = new GroupManager().createGroup("platform-team", sender);
+            message = new ChatMessage(sender, payload.text(), group, Instant.now().toString());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Groups {
+
+        @Param({ "5", "500", "5000" })
+        public int members;
+
+        Group group;
+        List<User> users;
+
+        @Setup
+        public void setUp() throws Exception {
+            GroupManager groups = new GroupManager();
+            users = new ArrayList<>(members);
+            User admin = new User("user-0", "secret");
+            users.add(admin);
+            group = groups.createGroup("group-" + members, admin);
+            for (int i = 1; i < members; i++) {
+                User user = new User("user-" + i, "secret");
+                users.add(user);
+                groups.addMember(group.getName(), user);
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] messageJson(Messages state) {
+        return Codecs.encode(ChatMessage.class, state.message, Codecs.Format.JSON);
+    }
+
+    @Benchmark
+    public byte[] messageBinary(Messages state) {
+        return Codecs.encode(ChatMessage.class, state.message, Codecs.Format.BINARY);
+    }
+
+    @Benchmark
+    public byte[] groupJson(Groups state) {
+        return Codecs.encode(Group.class, state.group, Codecs.Format.JSON);
+    }
+
+    @Benchmark
+    public byte[] groupBinary(Groups state) {
+        return Codecs.encode(Group.class, state.group, Codecs.Format.BINARY);
+    }
+
+    @Benchmark
+    public byte[] usersJson(Groups state) {
+        return Codecs.encodeAll(User.class, state.users, Codecs.Format.JSON);
+    }
+
+    @Benchmark
+    public byte[] usersBinary(Groups state) {
+        return Codecs.encodeAll(User.class, state.users, Codecs.Format.BINARY);
+    }
+}
@@ -0,0 +1,26 @@
+package com.rasel.bench;
+
+/**
+ * Message bodies of realistic sizes shared by the benchmarks.
+ */
+public enum Payloads {
+    /** A typical chat line. */
+    SHORT,
+    /** A pasted log or code snippet of about 10 KB, in lines of 80 characters. */
+    PASTE_10K;
+
+    private static final String LINE = "2026-10-17 06:42:06.246 INFO (client-handler-3) Message delivered to group ops";
+
+    public String text() {
+        return switch (this) {
+            case SHORT -> "hey, are we still on for the deploy at 5?";
+            case PASTE_10K -> {
+                StringBuilder paste = new StringBuilder(10 * 1024 + LINE.length());
+                while (paste.length() < 10 * 1024) {
+                    paste.append(LINE).append('\n');
+                }
+                yield paste.toString();
+            }
+        };
+    }
+}
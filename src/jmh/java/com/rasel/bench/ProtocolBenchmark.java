@@ -0,0 +1,124 @@
+package com.rasel.bench;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rasel.common.Credentials;
+import com.rasel.common.DataType;
+import com.rasel.common.Protocol;
+import com.rasel.common.RequestBuilder;
+import com.rasel.common.RequestIntent;
+import com.rasel.common.RequestParser;
+import com.rasel.common.ResponseBuilder;
+import com.rasel.common.ResponseParser;
+import com.rasel.common.ResponseResource;
+
+/**
+ * Building and parsing SEND requests and MESSAGES responses in both wire
+ * formats, the work done for every chat message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    private static final Credentials CREDENTIALS = new Credentials("alice", "correct horse battery staple");
+    private static final String GROUP = "platform-team";
+
+    @Param({ "SHORT", "PASTE_10K" })
+    public Payloads payload;
+
+    private String message;
+    private String responseJson;
+    private String requestText;
+    private String responseText;
+    private ByteBuffer requestHeader;
+    private ByteBuffer requestBody;
+    private ByteBuffer responseHeader;
+    private ByteBuffer responseBody;
+
+    @Setup
+    public void setUp() {
+        message = payload.text();
+        // What handleSend broadcasts for the message
+        responseJson = "{\"group\":\"" + GROUP + "\",\"senderId\":\"alice\",\"senderName\":\"alice\",\"content\":\""
+                + message.replace("\n", "\\n") + "\",\"timestamp\":\"2026-10-17T06:39:58.263416744Z\",\"sequence\":42}";
+        // Parsers get the frame without its terminator line, as FrameReader hands it over
+        requestText = withoutTerminator(request().getRequest(), Protocol.END_OF_REQUEST);
+        responseText = withoutTerminator(response().getResponseString(), Protocol.END_OF_RESPONSE);
+
+        byte[] request = request().encode(Protocol.BINARY_VERSION);
+        requestHeader = ByteBuffer.wrap(request, 0, Protocol.HEADER_SIZE).slice();
+        requestBody = ByteBuffer.wrap(request, Protocol.HEADER_SIZE, request.length - Protocol.HEADER_SIZE).slice();
+        byte[] response = response().encode(Protocol.BINARY_VERSION);
+        responseHeader = ByteBuffer.wrap(response, 0, Protocol.HEADER_SIZE).slice();
+        responseBody = ByteBuffer.wrap(response, Protocol.HEADER_SIZE, response.length - Protocol.HEADER_SIZE).slice();
+    }
+
+    private static String withoutTerminator(String frame, String terminator) {
+        return frame.substring(0, frame.length() - terminator.length() - 1);
+    }
+
+    private RequestBuilder request() {
+        return new RequestBuilder(RequestIntent.SEND).withCredentials(CREDENTIALS).withGroup(GROUP).withData(message);
+    }
+
+    private ResponseBuilder response() {
+        return ResponseBuilder.ok(responseJson, DataType.JSON, GROUP, ResponseResource.MESSAGES);
+    }
+
+    @Benchmark
+    public String buildRequestText() {
+        return request().getRequest();
+    }
+
+    @Benchmark
+    public RequestParser parseRequestText() throws Exception {
+        return new RequestParser(requestText);
+    }
+
+    @Benchmark
+    public byte[] encodeRequestBinary() {
+        return request().encode(Protocol.BINARY_VERSION);
+    }
+
+    @Benchmark
+    public RequestParser decodeRequestBinary() throws Exception {
+        return Protocol.decodeRequest(requestHeader, requestBody);
+    }
+
+    @Benchmark
+    public String buildResponseText() {
+        return response().getResponseString();
+    }
+
+    @Benchmark
+    public ResponseParser parseResponseText() throws Exception {
+        return new ResponseParser(responseText);
+    }
+
+    @Benchmark
+    public byte[] encodeResponseBinary() {
+        return response().encode(Protocol.BINARY_VERSION);
+    }
+
+    @Benchmark
+    public ResponseParser decodeResponseBinary() throws Exception {
+        return Protocol.decodeResponse(responseHeader, responseBody);
+    }
+}
@@ -1,16 +1,93 @@
 package com.rasel;
 
-import java.util.List;
+import java.io.IOException;
 
+import com.rasel.server.NioServer;
 import com.rasel.server.Server;
+import com.rasel.server.ServerConfig;
 import com.rasel.server.db.DatabaseManager;
-import com.rasel.server.db.User;
-import com.rasel.server.db.UserParser;
-import com.rasel.server.db.UserSerializer;
+import com.rasel.server.logging.ConsoleSink;
+import com.rasel.server.logging.FileSink;
+import com.rasel.server.logging.Log;
+import com.rasel.server.metrics.Metrics;
 
 public class Rasel {
     public static void main(String[] args) {
-        Server server = new Server();
-        server.acceptConnections();
+        // Settings come from the defaults, "--config=PATH" (or RASEL_CONFIG),
+        // RASEL_* / LOG_* variables and "--key=value" arguments, see ServerConfig
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                System.out.println(ServerConfig.USAGE);
+                return;
+            }
+        }
+        ServerConfig config;
+        try {
+            config = ServerConfig.load(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid configuration: " + e.getMessage());
+            System.err.println(ServerConfig.USAGE);
+            System.exit(1);
+            return;
+        } catch (IOException e) {
+            System.err.println("Invalid configuration: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        Log.setLevel(config.getLogLevel());
+        if (config.isLogAsync()) {
+            try {
+                Log.startAsync(config.getLogFile() != null
+                        ? new FileSink(config.getLogFile(), config.getLogFormat(), config.getLogRotateBytes(),
+                                config.getLogRotateInterval(), config.getLogKeep())
+                        : new ConsoleSink());
+            } catch (IOException e) {
+                Log.error("Failed to open log file %s: %s", config.getLogFile(), e.getMessage());
+            }
+        }
+        // Logs request metrics that often and on shutdown, 0 disables the report
+        boolean reportMetrics = config.getMetricsInterval().isPositive();
+        Metrics.startReporter(config.getMetricsInterval());
+
+        if (config.getDataDirectory() != null) {
+            try {
+                DatabaseManager.open(config.getDataDirectory(), config.getSnapshotInterval());
+            } catch (IOException e) {
+                Log.error("Failed to open database at %s: %s", config.getDataDirectory(), e.getMessage());
+                Log.stopAsync();
+                System.exit(1);
+            }
+        }
+
+        Runnable shutdown;
+        Runnable accept;
+        try {
+            if (config.getIo() == ServerConfig.Io.NIO) {
+                NioServer server = new NioServer(config);
+                shutdown = server::shutdown;
+                accept = server::acceptConnections;
+            } else {
+                Server server = new Server(config);
+                shutdown = server::shutdown;
+                accept = server::acceptConnections;
+            }
+        } catch (IOException e) {
+            Log.error("Failed to listen on port %d: %s", config.getPort(), e.getMessage());
+            DatabaseManager.close();
+            Log.stopAsync();
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            shutdown.run();
+            DatabaseManager.close();
+            if (reportMetrics) {
+                Metrics.stopReporter();
+                Metrics.report();
+            }
+            Log.stopAsync();
+        }));
+        accept.run();
     }
 }
@@ -1,37 +1,67 @@
 package com.rasel.client;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.function.Consumer;
 
 import com.rasel.common.Credentials;
+import com.rasel.common.DataType;
+import com.rasel.common.FrameReader;
+import com.rasel.common.Protocol;
 import com.rasel.common.RequestBuilder;
 import com.rasel.common.RequestIntent;
 import com.rasel.common.ResponseParser;
 import com.rasel.common.ResponseResource;
+import com.rasel.common.ResponseStatus;
+import com.rasel.server.ExecutionMode;
 import com.rasel.server.logging.Log;
 
 public class Client implements ClientInterface {
 
     private final String serverAddress;
     private final int serverPort;
+    private final int protocolVersion;
+    private final ExecutionMode receiverMode;
 
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private OutputStream out;
+    private FrameReader in;
 
     private volatile boolean authenticated = false;
     private Credentials credentials;
 
     private final ResponseBus responseBus = new ResponseBus();
+    private final GroupCache groupCache = new GroupCache();
     private Thread receiverThread;
+    // GET_GROUPS sent to seed the group cache, only used by the receiver thread
+    private boolean groupsRequested = false;
 
     public Client(String serverAddress, int serverPort) {
+        this(serverAddress, serverPort, Protocol.TEXT_VERSION);
+    }
+
+    /**
+     * @param protocolVersion wire format used for requests,
+     *                        {@link Protocol#TEXT_VERSION} or
+     *                        {@link Protocol#BINARY_VERSION}; responses are
+     *                        accepted in either format
+     */
+    public Client(String serverAddress, int serverPort, int protocolVersion) {
+        this(serverAddress, serverPort, protocolVersion, ExecutionMode.PLATFORM);
+    }
+
+    /**
+     * @param receiverMode thread type of the background receiver, virtual
+     *                     threads let one process hold many sessions
+     */
+    public Client(String serverAddress, int serverPort, int protocolVersion, ExecutionMode receiverMode) {
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
+        this.protocolVersion = protocolVersion;
+        this.receiverMode = receiverMode;
     }
 
     // Connection lifecycle
@@ -40,8 +70,10 @@ public class Client implements ClientInterface {
     public void connect() throws IOException {
         socket = new Socket(serverAddress, serverPort);
         socket.setKeepAlive(true);
-        out = new PrintWriter(socket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        // Requests are small and complete, don't hold them back waiting for ACKs
+        socket.setTcpNoDelay(true);
+        out = new BufferedOutputStream(socket.getOutputStream());
+        in = new FrameReader(socket.getInputStream(), Protocol.END_OF_RESPONSE);
         startReceiver();
     }
 
@@ -62,8 +94,7 @@ public class Client implements ClientInterface {
     @Override
     public void authenticate(Credentials credentials) {
         this.credentials = credentials;
-        String authRequest = RequestBuilder.authRequest(credentials);
-        sendRequest(authRequest);
+        sendRequest(new RequestBuilder(RequestIntent.AUTH, credentials, null, null));
     }
 
     @Override
@@ -80,7 +111,7 @@ public class Client implements ClientInterface {
                 credentials,
                 null,
                 null);
-        sendRequest(request.getRequest());
+        sendRequest(request);
     }
 
     @Override
@@ -94,64 +125,71 @@ public class Client implements ClientInterface {
     public void sendMessage(String group, String message) {
         if (!authenticated)
             return;
-        String request = RequestBuilder.sendMessageRequest(credentials, group, message);
-        sendRequest(request);
+        sendRequest(new RequestBuilder(RequestIntent.SEND, credentials, group, message));
     }
 
     @Override
     public void requestCreateGroup(String groupName) {
         if (!authenticated)
             return;
-        String req = RequestBuilder.createGroupRequest(credentials, groupName);
-        sendRequest(req);
+        sendRequest(new RequestBuilder(RequestIntent.CREATE, credentials, groupName, null));
     }
 
     @Override
     public void requestGroups() {
         if (!authenticated)
             return;
-        String req = RequestBuilder.getGroupsRequest(credentials);
-        sendRequest(req);
+        sendRequest(new RequestBuilder(RequestIntent.GET_GROUPS, credentials, null, null));
     }
 
     @Override
     public void requestUsers() {
         if (!authenticated)
             return;
-        String req = RequestBuilder.getUsersRequest(credentials);
-        sendRequest(req);
+        sendRequest(new RequestBuilder(RequestIntent.GET_USERS, credentials, null, null));
     }
 
     @Override
     public void requestUsers(String groupName) {
         if (!authenticated)
             return;
-        String req = RequestBuilder.getUsersRequest(credentials, groupName);
-        sendRequest(req);
+        sendRequest(new RequestBuilder(RequestIntent.GET_USERS, credentials, groupName, null));
     }
 
     @Override
     public void requestMessages(String groupName) {
         if (!authenticated)
             return;
-        // Implement once RequestBuilder supports it; keep non-throwing.
-        // Example:
-        // String req = RequestBuilder.getMessagesRequest(credentials, groupName);
-        // sendRequest(req);
-        Log.info("requestMessages: not implemented in RequestBuilder; group=%s", groupName);
+        sendRequest(new RequestBuilder(RequestIntent.GET_MESSAGES, credentials, groupName, null));
+    }
+
+    @Override
+    public void requestMessagesBefore(String groupName, long beforeSequence, int limit) {
+        if (!authenticated)
+            return;
+        sendRequest(new RequestBuilder(RequestIntent.GET_MESSAGES, credentials, groupName,
+                RequestBuilder.messagesQuery(beforeSequence, -1, limit)));
+    }
+
+    @Override
+    public void requestMessagesAfter(String groupName, long afterSequence, int limit) {
+        if (!authenticated)
+            return;
+        sendRequest(new RequestBuilder(RequestIntent.GET_MESSAGES, credentials, groupName,
+                RequestBuilder.messagesQuery(-1, afterSequence, limit)));
     }
 
     @Override
     public void requestAddUserToGroup(String groupName, String username) {
         if (!authenticated)
             return;
-        String req = RequestBuilder.addUserToGroupRequest(credentials, groupName, username);
-        sendRequest(req);
+        // Use DATA field to carry the target username
+        sendRequest(new RequestBuilder(RequestIntent.ADD, credentials, groupName, username));
     }
 
     @Override
     public void sendRequest(RequestBuilder request) {
-        sendRequest(request.getRequest());
+        write(request.encode(protocolVersion));
     }
 
     // Legacy (discouraged with async receiver running)
@@ -163,32 +201,9 @@ public class Client implements ClientInterface {
     }
 
     ResponseParser getResponseLegacy() throws Exception {
-        StringBuilder rb = new StringBuilder();
-        boolean ended = false;
-        String line;
-        int lineCount = 0;
-        final int MAX_LINES = 10000;
-        while ((line = in.readLine()) != null) {
-            if (line.equals("END_OF_RESPONSE")) {
-                ended = true;
-                break;
-            }
-            rb.append(line).append("\n");
-            if (++lineCount > MAX_LINES) {
-                throw new Exception("Request too large");
-            }
-        }
-
-        if (!ended) {
-            throw new IOException("Stream ended before END_OF_RESPONSE");
-        }
-
-        String payload = rb.toString();
-        if (payload.isBlank()) {
-            throw new Exception("Empty response");
-        }
-        Log.trace("Received raw request (%d chars)", payload.length());
-        return new ResponseParser(payload);
+        ResponseParser response = in.readResponse();
+        Log.trace("Received response (protocol v%d)", in.getVersion());
+        return response;
     }
 
     // Subscriptions
@@ -203,6 +218,16 @@ public class Client implements ClientInterface {
         return responseBus.on(ResponseResource.GROUPS, handler);
     }
 
+    @Override
+    public AutoCloseable onGroupDelta(Consumer<ResponseParser> handler) {
+        return responseBus.on(ResponseResource.GROUP_DELTA, handler);
+    }
+
+    @Override
+    public GroupCache getGroupCache() {
+        return groupCache;
+    }
+
     @Override
     public AutoCloseable onMessages(Consumer<ResponseParser> handler) {
         return responseBus.on(ResponseResource.MESSAGES, handler);
@@ -234,54 +259,76 @@ public class Client implements ClientInterface {
 
     // Internals
 
+    /**
+     * Send a pre-built text (v1) request, regardless of the configured
+     * protocol version.
+     */
     public void sendRequest(String request) {
+        write((request + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private synchronized void write(byte[] frame) {
         if (!isConnected())
             return;
-        out.println(request);
+        try {
+            out.write(frame);
+            out.flush();
+        } catch (IOException e) {
+            Log.warn("Failed to send request: %s", e.getMessage());
+        }
     }
 
     private void startReceiver() {
-        receiverThread = new Thread(this::receiveLoop, "response-receiver");
-        receiverThread.setDaemon(true);
-        receiverThread.start();
+        receiverThread = switch (receiverMode) {
+            case PLATFORM ->
+                Thread.ofPlatform().name("response-receiver").daemon(true).start(this::receiveLoop);
+            case VIRTUAL ->
+                Thread.ofVirtual().name("response-receiver").start(this::receiveLoop);
+        };
     }
 
     private void receiveLoop() {
         try {
             while (!Thread.currentThread().isInterrupted() && isConnected()) {
-                StringBuilder sb = new StringBuilder(256);
-                String line;
-                boolean ended = false;
-                int lineCount = 0;
-                final int MAX_LINES = 10000;
-
-                while ((line = in.readLine()) != null) {
-                    if ("END_OF_RESPONSE".equals(line)) {
-                        ended = true;
-                        break;
-                    }
-                    sb.append(line).append('\n');
-                    if (++lineCount > MAX_LINES)
-                        throw new IOException("Response too large");
-                }
-                if (!ended)
-                    break; // socket probably closed
-
-                String payload = sb.toString();
-                if (payload.isBlank())
-                    continue;
-
-                // Prime keys to avoid stale values
-                String primed = "STATUS:\nRESOURCE:\nDATA_TYPE:\nGROUP:\nDATA:\n" + payload;
-                ResponseParser resp = new ResponseParser(primed);
-
+                ResponseParser resp = in.readResponse();
                 responseBus.publish(resp);
+                updateGroupCache(resp);
             }
         } catch (Exception e) {
             Log.warn("Receiver loop terminated: %s", e.getMessage());
         }
     }
 
+    /**
+     * Keep the group cache current, a delta that changed it is followed by a
+     * GROUPS response with the merged list so GROUPS subscribers keep working.
+     * Until the cache holds a full list a delta fetches one instead.
+     */
+    private void updateGroupCache(ResponseParser resp) {
+        if (resp == null || !resp.isOk() || !resp.isJson()) {
+            return;
+        }
+        try {
+            if (resp.getResource() == ResponseResource.GROUPS) {
+                groupCache.replace(resp.getData());
+            } else if (resp.getResource() == ResponseResource.GROUP_DELTA) {
+                boolean changed = groupCache.apply(resp.getData());
+                if (!groupCache.isComplete()) {
+                    // A list built from deltas alone would replace the subscribers' full one
+                    if (!groupsRequested) {
+                        groupsRequested = true;
+                        requestGroups();
+                    }
+                } else if (changed) {
+                    responseBus.publish(new ResponseParser(
+                            ResponseStatus.OK, ResponseResource.GROUPS, DataType.JSON, null, groupCache.toJson()));
+                }
+            }
+        } catch (Exception e) {
+            Log.warn("Failed to update group cache: %s", e.getMessage());
+        }
+    }
+
     public String getUsername() {
         return credentials != null ? credentials.getUsername() : null;
     }
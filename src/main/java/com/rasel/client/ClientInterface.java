@@ -114,13 +114,34 @@ public interface ClientInterface {
     void requestUsers(String groupName);
 
     /**
-     * Request messages for the specified group (if supported by the protocol).
-     * Real-time messages will arrive via resource=MESSAGES.
+     * Request the latest messages of the specified group.
+     * The page arrives as a JSON array via resource=MESSAGES, oldest first,
+     * real-time messages arrive there as single JSON objects.
      *
      * @param groupName group identifier
      */
     void requestMessages(String groupName);
 
+    /**
+     * Request up to {@code limit} messages older than the given sequence number,
+     * used to page backwards through history.
+     *
+     * @param groupName      group identifier
+     * @param beforeSequence exclusive upper bound
+     * @param limit          page size, capped by the server
+     */
+    void requestMessagesBefore(String groupName, long beforeSequence, int limit);
+
+    /**
+     * Request up to {@code limit} messages newer than the given sequence number,
+     * used to catch up after a reconnect.
+     *
+     * @param groupName     group identifier
+     * @param afterSequence exclusive lower bound
+     * @param limit         page size, capped by the server
+     */
+    void requestMessagesAfter(String groupName, long afterSequence, int limit);
+
     /**
      * Request adding a user to a group (admin-only).
      * Result is delivered asynchronously.
@@ -160,6 +181,22 @@ public interface ClientInterface {
      */
     AutoCloseable onGroups(Consumer<ResponseParser> handler);
 
+    /**
+     * Subscribe to responses with resource=GROUP_DELTA, single changes of the
+     * user's groups. Deltas are also merged into {@link #getGroupCache()},
+     * which then republishes the whole list to GROUPS subscribers.
+     *
+     * @param handler consumer of parsed responses
+     * @return unsubscribe handle
+     */
+    AutoCloseable onGroupDelta(Consumer<ResponseParser> handler);
+
+    /**
+     * @return the user's groups as of the last GROUPS list and the deltas
+     *         received since
+     */
+    GroupCache getGroupCache();
+
     /**
      * Subscribe to responses with resource=MESSAGES.
      * Returns an AutoCloseable; call close() to unsubscribe.
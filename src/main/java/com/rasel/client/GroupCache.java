@@ -0,0 +1,126 @@
+package com.rasel.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.rasel.common.GroupDeltaPayload;
+import com.rasel.common.GroupDeltaPayload.GroupView;
+import com.rasel.common.GroupDeltaPayload.Member;
+import com.rasel.server.db.JsonSupport;
+
+/**
+ * Client-side copy of the user's group list, kept current by applying
+ * GROUP_DELTA responses to the last full GROUPS list.
+ *
+ * Every group remembers the version of the last change applied to it, a
+ * delta that is not newer is already part of the list and ignored. Deltas
+ * that race each other on the server can arrive out of order, they are
+ * applied as idempotent set operations so the order only matters for changes
+ * of the same member.
+ *
+ * Deltas alone don't make a complete list, {@link #isComplete()} is false
+ * until a full GROUPS list has been {@link #replace(String) loaded}.
+ */
+public class GroupCache {
+
+    private final Map<String, GroupView> groups = new LinkedHashMap<>();
+
+    private boolean complete = false;
+
+    /**
+     * Replace the cache with a full GROUPS list.
+     *
+     * @param json the JSON array of a GROUPS response
+     */
+    public synchronized void replace(String json) throws Exception {
+        List<GroupView> list = JsonSupport.MAPPER.readValue(json, new TypeReference<List<GroupView>>() {
+        });
+        groups.clear();
+        for (GroupView view : list) {
+            if (view != null && view.name != null) {
+                groups.put(view.name, view);
+            }
+        }
+        complete = true;
+    }
+
+    /**
+     * @return true once a full GROUPS list was loaded, before that the cache
+     *         only holds the groups deltas brought
+     */
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Apply a GROUP_DELTA.
+     *
+     * @param json the JSON object of a GROUP_DELTA response
+     * @return true if the cached list changed
+     */
+    public synchronized boolean apply(String json) throws Exception {
+        GroupDeltaPayload delta = JsonSupport.MAPPER.readValue(json, GroupDeltaPayload.class);
+        if (delta.op == null || delta.group == null) {
+            return false;
+        }
+        GroupView group = groups.get(delta.group);
+        if (delta.op == GroupDeltaPayload.Op.GROUP_ADDED) {
+            if (delta.view == null || (group != null && group.version >= delta.version)) {
+                return false;
+            }
+            groups.put(delta.group, delta.view);
+            return true;
+        }
+        if (delta.op == GroupDeltaPayload.Op.GROUP_REMOVED) {
+            return groups.remove(delta.group) != null;
+        }
+        // Member changes need the group, a later full list brings it
+        if (group == null || group.version >= delta.version || delta.user == null) {
+            return false;
+        }
+        if (group.members == null) {
+            group.members = new ArrayList<>();
+        }
+        group.version = delta.version;
+        return switch (delta.op) {
+            case MEMBER_JOINED -> indexOf(group, delta.user) < 0 && group.members.add(new Member(delta.user));
+            case MEMBER_LEFT -> {
+                int index = indexOf(group, delta.user);
+                yield index >= 0 && group.members.remove(index) != null;
+            }
+            case ADMIN_CHANGED -> {
+                boolean same = group.admin != null && delta.user.equals(group.admin.username);
+                group.admin = new Member(delta.user);
+                yield !same;
+            }
+            default -> false;
+        };
+    }
+
+    /**
+     * @return the cached groups, in the order they were listed or added
+     */
+    public synchronized List<GroupView> getGroups() {
+        return new ArrayList<>(groups.values());
+    }
+
+    /**
+     * @return the cached list in the shape of a GROUPS response
+     */
+    public synchronized String toJson() throws Exception {
+        return JsonSupport.MAPPER.writeValueAsString(groups.values());
+    }
+
+    private static int indexOf(GroupView group, String username) {
+        for (int i = 0; i < group.members.size(); i++) {
+            Member member = group.members.get(i);
+            if (member != null && username.equals(member.username)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
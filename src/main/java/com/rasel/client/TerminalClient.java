@@ -9,6 +9,7 @@ import com.rasel.common.DataType;
 import com.rasel.common.ResponseParser;
 import com.rasel.server.db.Group;
 import com.rasel.server.db.GroupParser;
+import com.rasel.server.db.JsonSupport;
 import com.rasel.server.db.User;
 import com.rasel.server.db.UserParser;
 
@@ -18,6 +19,7 @@ public class TerminalClient {
     private volatile String currentGroup = null;
     private final Scanner scanner = new Scanner(System.in); // shared scanner, not closed (System.in)
     private final Object consoleLock = new Object(); // synchronize mixed output from multiple threads
+    private static final int HISTORY_PAGE = 20; // messages per /history page
 
     // Subscriptions
     private AutoCloseable subMessages;
@@ -60,6 +62,8 @@ public class TerminalClient {
             "/users",
             "/users <group>",
             "/add <username>",
+            "/history",
+            "/history <before>",
             "/quit",
     };
 
@@ -73,6 +77,7 @@ public class TerminalClient {
         System.out.println("  " + BOLD + "/users" + RESET + FG_GRAY + " - List all users" + RESET);
         System.out.println("  " + BOLD + "/users <group>" + RESET + FG_GRAY + " - List all users in group" + RESET);
         System.out.println("  " + BOLD + "/add <username>" + RESET + FG_GRAY + " - Add user to current group (admin only)" + RESET);
+        System.out.println("  " + BOLD + "/history [before]" + RESET + FG_GRAY + " - Show recent messages of current group (older than sequence <before>)" + RESET);
         System.out.println("  " + BOLD + "/quit" + RESET + FG_GRAY + "  - Exit client" + RESET);
         System.out.println(FG_GRAY + "Tip: start a command, e.g. '/cr', to see suggestions." + RESET);
     }
@@ -245,6 +250,7 @@ public class TerminalClient {
                       message.startsWith("/add ") ||
                       message.equals("/groups") ||
                       message.startsWith("/users") ||
+                      message.startsWith("/history") ||
                       message.equals("/login") ||
                       message.equals("/help") ||
                       message.equals("/h") ||
@@ -311,6 +317,24 @@ public class TerminalClient {
                 continue;
             }
 
+            if (message.startsWith("/history")) {
+                if (currentGroup == null || currentGroup.isBlank()) {
+                    System.out.println(FG_YELLOW + "⚠️  Select a group first with /switch <group> or /create <group>." + RESET);
+                    continue;
+                }
+                String before = message.substring(8).trim();
+                if (before.isEmpty()) {
+                    client.requestMessages(currentGroup);
+                    continue;
+                }
+                try {
+                    client.requestMessagesBefore(currentGroup, Long.parseLong(before), HISTORY_PAGE);
+                } catch (NumberFormatException e) {
+                    System.out.println(FG_YELLOW + "⚠️  Usage: /history <before-sequence>" + RESET);
+                }
+                continue;
+            }
+
             if (!message.isEmpty() && client.isAuthenticated()) {
                 if (currentGroup == null || currentGroup.isBlank()) {
                     System.out.println(FG_YELLOW + "⚠️  No group selected. Use /create <group> or /switch <group> first." + RESET);
@@ -366,8 +390,7 @@ public class TerminalClient {
         } catch (Exception ex) {
             // Fallback: parse to raw shapes and render
             try {
-                com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper()
-                        .configure(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+                com.fasterxml.jackson.databind.ObjectMapper mapper = JsonSupport.MAPPER;
                 java.util.List<RawGroup> groups = mapper.readValue(
                         data,
                         new com.fasterxml.jackson.core.type.TypeReference<java.util.List<RawGroup>>() {});
@@ -433,28 +456,49 @@ public class TerminalClient {
     }
 
     private void renderMessage(ResponseParser response) {
-        String grp = response.getGroup();
-        String sender = null;
-        String ts = null;
         String text = response.getData();
 
         try {
             if (response.getResource() != null &&
                 response.getResource().name().equals("MESSAGES") &&
                 response.getDataType() == com.rasel.common.DataType.JSON) {
-                com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+                com.fasterxml.jackson.databind.ObjectMapper mapper = JsonSupport.MAPPER;
+                if (text != null && text.trim().startsWith("[")) {
+                    // History page, oldest first
+                    java.util.List<com.rasel.common.ChatMessagePayload> page = mapper.readValue(
+                        text, new com.fasterxml.jackson.core.type.TypeReference<java.util.List<com.rasel.common.ChatMessagePayload>>() {});
+                    if (page.isEmpty()) {
+                        System.out.println(FG_GRAY + "(no messages)" + RESET);
+                    }
+                    for (com.rasel.common.ChatMessagePayload payload : page) {
+                        renderPayload(response.getGroup(), payload, null);
+                    }
+                    if (!page.isEmpty() && page.get(0).sequence > 1) {
+                        System.out.println(FG_GRAY + "(older: /history " + page.get(0).sequence + ")" + RESET);
+                    }
+                    return;
+                }
                 com.rasel.common.ChatMessagePayload payload = mapper.readValue(
                     text, com.rasel.common.ChatMessagePayload.class);
-                if (payload != null) {
-                    grp = payload.group != null ? payload.group : grp;
-                    sender = payload.senderName != null ? payload.senderName
-                            : (payload.senderId != null ? ("id:" + payload.senderId) : null);
-                    ts = payload.timestamp;
-                    text = payload.content != null ? payload.content : text;
-                }
+                renderPayload(response.getGroup(), payload, text);
+                return;
             }
         } catch (com.fasterxml.jackson.core.JsonProcessingException ignore) {}
 
+        renderPayload(response.getGroup(), null, text);
+    }
+
+    private void renderPayload(String grp, com.rasel.common.ChatMessagePayload payload, String text) {
+        String sender = null;
+        String ts = null;
+        if (payload != null) {
+            grp = payload.group != null ? payload.group : grp;
+            sender = payload.senderName != null ? payload.senderName
+                    : (payload.senderId != null ? ("id:" + payload.senderId) : null);
+            ts = payload.timestamp;
+            text = payload.content != null ? payload.content : text;
+        }
+
         String tsPart = (ts != null && !ts.isBlank())
                 ? (DIM + FG_GRAY + "(" + ts + ")" + RESET + " ")
                 : "";
@@ -10,6 +10,7 @@ public class ChatMessagePayload {
     public String senderName;
     public String content;
     public String timestamp; // ISO-8601
+    public long sequence; // per-group sequence number, 0 if unknown
 
     public ChatMessagePayload() {}
 
@@ -0,0 +1,181 @@
+package com.rasel.common;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Blocking reader for both wire formats on a single stream.
+ *
+ * Each frame is detected from its first byte: {@link Protocol#MAGIC} starts a
+ * binary v2 frame, read with one bulk read for the header and one for the
+ * body, anything else is a v1 text frame read line by line up to the
+ * terminator line. Buffers are reused across frames, so one reader should be
+ * used by a single thread.
+ */
+public final class FrameReader {
+
+    private static final int MAX_LINES = 10000;
+
+    private final InputStream in;
+
+    private final byte[] terminator;
+
+    // requests are limited to MAX_FRAME_BYTES, responses to MAX_RESPONSE_BYTES
+    private final int maxFrameBytes;
+
+    private final ByteBuffer header = ByteBuffer.allocate(Protocol.HEADER_SIZE);
+
+    private ByteBuffer body = ByteBuffer.allocate(1024);
+
+    private byte[] text = new byte[1024];
+
+    private int textLength;
+
+    private int version = Protocol.TEXT_VERSION;
+
+    private long decodeNanos;
+
+    /**
+     * @param in         stream to read from, buffered by this reader
+     * @param terminator text frame terminator, END_OF_REQUEST or END_OF_RESPONSE
+     */
+    public FrameReader(InputStream in, String terminator) {
+        this.in = new BufferedInputStream(in);
+        this.terminator = terminator.getBytes(StandardCharsets.US_ASCII);
+        this.maxFrameBytes = terminator.equals(Protocol.END_OF_REQUEST)
+                ? Protocol.MAX_FRAME_BYTES
+                : Protocol.MAX_RESPONSE_BYTES;
+    }
+
+    /**
+     * Block until the next request frame has been read.
+     */
+    public RequestParser readRequest() throws Exception {
+        boolean binary = readFrame();
+        long started = System.nanoTime();
+        RequestParser request;
+        if (binary) {
+            request = Protocol.decodeRequest(header, body);
+        } else {
+            String payload = textPayload();
+            if (payload.isBlank()) {
+                throw new Exception("Empty request");
+            }
+            request = new RequestParser(payload);
+        }
+        decodeNanos = System.nanoTime() - started;
+        return request;
+    }
+
+    /**
+     * Block until the next non-empty response frame has been read.
+     */
+    public ResponseParser readResponse() throws Exception {
+        while (true) {
+            if (readFrame()) {
+                return Protocol.decodeResponse(header, body);
+            }
+            String payload = textPayload();
+            if (!payload.isBlank()) {
+                return new ResponseParser(payload);
+            }
+        }
+    }
+
+    /**
+     * @return protocol version of the last frame read
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return time spent decoding the last request once its bytes were read,
+     *         in nanoseconds
+     */
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * @return true for a binary frame, false for a text frame
+     */
+    private boolean readFrame() throws Exception {
+        int first = in.read();
+        if (first < 0) {
+            throw new EOFException("Stream ended before " + new String(terminator, StandardCharsets.US_ASCII));
+        }
+        if ((byte) first == Protocol.MAGIC) {
+            readBinary();
+            version = Protocol.BINARY_VERSION;
+            return true;
+        }
+        readText(first);
+        version = Protocol.TEXT_VERSION;
+        return false;
+    }
+
+    private void readBinary() throws IOException {
+        byte[] headerBytes = header.array();
+        headerBytes[0] = Protocol.MAGIC;
+        readFully(headerBytes, 1, Protocol.HEADER_SIZE - 1);
+
+        int length = Protocol.bodyLength(header, maxFrameBytes);
+        if (body.capacity() < length) {
+            body = ByteBuffer.allocate(Math.max(length, body.capacity() * 2));
+        }
+        readFully(body.array(), 0, length);
+        body.clear().limit(length);
+    }
+
+    private void readText(int first) throws Exception {
+        textLength = 0;
+        int lineStart = 0;
+        int lineCount = 0;
+        int b = first;
+        while (true) {
+            if (textLength == text.length) {
+                if (textLength >= maxFrameBytes) {
+                    throw new Exception("Frame too large");
+                }
+                text = Arrays.copyOf(text, (int) Math.min((long) textLength * 2, maxFrameBytes));
+            }
+            text[textLength++] = (byte) b;
+            if (b == '\n') {
+                int lineEnd = textLength - 1;
+                if (lineEnd > lineStart && text[lineEnd - 1] == '\r') {
+                    lineEnd--;
+                }
+                if (Arrays.equals(text, lineStart, lineEnd, terminator, 0, terminator.length)) {
+                    textLength = lineStart;
+                    return;
+                }
+                lineStart = textLength;
+                if (++lineCount > MAX_LINES) {
+                    throw new Exception("Request too large");
+                }
+            }
+            b = in.read();
+            if (b < 0) {
+                throw new IOException(
+                        "Stream ended before " + new String(terminator, StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    private String textPayload() {
+        String payload = new String(text, 0, textLength, StandardCharsets.UTF_8);
+        return payload.indexOf('\r') >= 0 ? payload.replace("\r\n", "\n") : payload;
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        if (in.readNBytes(buffer, offset, length) != length) {
+            throw new EOFException("Stream ended inside a frame");
+        }
+    }
+}
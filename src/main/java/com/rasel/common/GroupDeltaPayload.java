@@ -0,0 +1,56 @@
+package com.rasel.common;
+
+import java.util.List;
+
+/**
+ * Wire-format DTO for a single change of a user's group list, sent in
+ * Response.DATA when RESOURCE=GROUP_DELTA and DATA_TYPE=JSON, instead of
+ * pushing the whole list again.
+ *
+ * {@code version} is the version of the group after the change. A group in a
+ * GROUPS list carries the version it was listed at, a delta with a version
+ * that is not newer is already contained in it.
+ */
+public class GroupDeltaPayload {
+
+    public enum Op {
+        /** The user became a member of {@code group}, {@code view} holds it. */
+        GROUP_ADDED,
+        /** The user is no longer a member of {@code group}. */
+        GROUP_REMOVED,
+        /** {@code user} joined {@code group}. */
+        MEMBER_JOINED,
+        /** {@code user} left {@code group}. */
+        MEMBER_LEFT,
+        /** {@code user} is the new admin of {@code group}. */
+        ADMIN_CHANGED,
+    }
+
+    public Op op;
+    public String group;
+    public long version;
+    public String user; // username, for member and admin changes
+    public GroupView view; // for GROUP_ADDED
+
+    public GroupDeltaPayload() {}
+
+    /**
+     * A group as listed in a GROUPS response.
+     */
+    public static class GroupView {
+        public String name;
+        public Member admin;
+        public List<Member> members;
+        public long version;
+    }
+
+    public static class Member {
+        public String username;
+
+        public Member() {}
+
+        public Member(String username) {
+            this.username = username;
+        }
+    }
+}
@@ -1,30 +1,59 @@
 package com.rasel.common;
 
-import java.util.HashMap;
-
 /**
- * General parser that performs initial parsing to data
+ * General parser that performs initial parsing to data.
+ *
+ * Scans a "KEY:value" line based frame exactly once, without splitting it
+ * into intermediate arrays, and reports every field to a {@link FieldHandler}.
+ * The parser holds no state, so request and response parsers can run
+ * concurrently on any number of threads.
+ *
+ * Keys are matched case-insensitively and handed to the handler upper-cased,
+ * lines without a ':' are ignored. The value of the tail key (DATA) runs to
+ * the end of the frame, so message bodies may contain newlines or text that
+ * looks like another field.
  */
-public class Parser {
+public final class Parser {
 
-    final static HashMap<String, String> macros = new HashMap<String, String>();
+    /**
+     * Receives the fields of a frame in the order they appear.
+     */
+    @FunctionalInterface
+    public interface FieldHandler {
+        void onField(String key, String value);
+    }
 
-    public Parser(String stream) {
-        initialParse(stream);
+    private Parser() {
     }
 
-    static void initialParse(String stream) {
-        String[] lines = stream.split("\n");
-        for (String line : lines) {
-            String[] dict = line.split(":", 2);
-            if (dict.length >= 1) {
-                String key = dict[0].toUpperCase();
-                // check if keyword exist inside default macros
-                if (!macros.containsKey(key) || dict.length != 2) {
-                    continue;
+    /**
+     * @param stream  raw frame, without the END_OF_REQUEST/END_OF_RESPONSE line
+     * @param tailKey key whose value extends to the end of the frame, may be null
+     * @param handler receives each field
+     */
+    public static void parse(String stream, String tailKey, FieldHandler handler) {
+        final int length = stream.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = stream.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+            int colon = stream.indexOf(':', lineStart);
+            if (colon >= 0 && colon < lineEnd) {
+                String key = stream.substring(lineStart, colon).toUpperCase();
+                if (key.equals(tailKey)) {
+                    // strip the single newline the builders append after DATA
+                    int end = length;
+                    if (end > colon + 1 && stream.charAt(end - 1) == '\n') {
+                        end--;
+                    }
+                    handler.onField(key, stream.substring(colon + 1, end));
+                    return;
                 }
-                macros.put(key, dict[1]);
+                handler.onField(key, stream.substring(colon + 1, lineEnd));
             }
+            lineStart = lineEnd + 1;
         }
     }
 }
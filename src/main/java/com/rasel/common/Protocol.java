@@ -0,0 +1,275 @@
+package com.rasel.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format constants and the codec for binary (v2) frames.
+ *
+ * Version 1 is the original text protocol, "KEY:value" lines terminated by an
+ * END_OF_REQUEST / END_OF_RESPONSE line. Version 2 frames are length-prefixed
+ * so they can be read with one bulk read for the header and one for the body,
+ * and their fields may contain any text, including newlines and the v1
+ * terminators.
+ *
+ * <pre>
+ * offset size field
+ *  0     1    magic 0xB2 (never the first byte of a text frame)
+ *  1     1    version (2)
+ *  2     1    kind, 0 = request, 1 = response
+ *  3     1    intent ordinal (request) or status ordinal (response)
+ *  4     1    resource ordinal + 1, 0 when absent (response)
+ *  5     1    data type ordinal (response)
+ *  6     1    flags, bit 0 = credentials present (request)
+ *  7     1    reserved
+ *  8     2    username length
+ * 10     2    password length
+ * 12     2    group length
+ * 14     2    reserved
+ * 16     4    data length
+ * </pre>
+ *
+ * The header is followed by username, password, group and data, all UTF-8,
+ * multi-byte integers are big-endian. Enum ordinals are part of the format,
+ * so new intents, statuses and resources must be appended to their enums.
+ *
+ * Version negotiation is implicit: a client opts into v2 by sending v2
+ * frames, and the server answers each connection in the version of the last
+ * frame it received on it.
+ */
+public final class Protocol {
+
+    public static final int TEXT_VERSION = 1;
+    public static final int BINARY_VERSION = 2;
+
+    public static final String END_OF_REQUEST = "END_OF_REQUEST";
+    public static final String END_OF_RESPONSE = ResponseBuilder.END_OF_RESPONSE;
+
+    public static final byte MAGIC = (byte) 0xB2;
+    public static final int HEADER_SIZE = 20;
+
+    /** Upper bound for the body of a single request frame, in bytes. */
+    public static final int MAX_FRAME_BYTES = 1 << 20;
+
+    /**
+     * Upper bound for the body of a response frame a client accepts, in bytes.
+     * Responses are built by the server and can hold whole user lists or
+     * history pages, the limit only guards clients against a broken stream.
+     */
+    public static final int MAX_RESPONSE_BYTES = 256 << 20;
+
+    /** Upper bound for usernames, passwords and group names, in UTF-8 bytes. */
+    public static final int MAX_NAME_BYTES = 0xFFFF;
+
+    private static final byte KIND_REQUEST = 0;
+    private static final byte KIND_RESPONSE = 1;
+    private static final int FLAG_CREDENTIALS = 1;
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[] TEXT_RESPONSE_END =
+            ("\n" + END_OF_RESPONSE + "\n").getBytes(StandardCharsets.US_ASCII);
+
+    private Protocol() {
+    }
+
+    /**
+     * Encode a request as a v2 frame.
+     */
+    public static byte[] encodeRequest(RequestIntent intent, Credentials credentials, String group, String data) {
+        byte[] username = credentials != null ? utf8(credentials.getUsername()) : EMPTY;
+        byte[] password = credentials != null ? utf8(credentials.getPassword()) : EMPTY;
+        byte[] groupBytes = utf8(group);
+        byte[] dataBytes = utf8(data);
+        if (username.length > MAX_NAME_BYTES || password.length > MAX_NAME_BYTES || groupBytes.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Credentials and group are limited to 65535 bytes");
+        }
+
+        ByteBuffer frame = header(username.length, password.length, groupBytes.length, dataBytes.length);
+        frame.put(2, KIND_REQUEST);
+        frame.put(3, (byte) intent.ordinal());
+        frame.put(6, (byte) (credentials != null ? FLAG_CREDENTIALS : 0));
+        return frame.put(username).put(password).put(groupBytes).put(dataBytes).array();
+    }
+
+    /**
+     * Encode a response as a v2 frame.
+     */
+    public static byte[] encodeResponse(
+            ResponseStatus status,
+            ResponseResource resource,
+            DataType dataType,
+            String group,
+            String data) {
+        return encodeResponse(status, resource, dataType, group, utf8(data));
+    }
+
+    /**
+     * Encode a response whose data already is UTF-8 as a v2 frame, the data
+     * is copied as is. Responses have no size limit, a group name too long
+     * for the header (which the server never creates) is left out.
+     */
+    public static byte[] encodeResponse(
+            ResponseStatus status,
+            ResponseResource resource,
+            DataType dataType,
+            String group,
+            byte[] dataBytes) {
+        byte[] groupBytes = utf8(group);
+        if (groupBytes.length > MAX_NAME_BYTES) {
+            groupBytes = EMPTY;
+        }
+
+        ByteBuffer frame = header(0, 0, groupBytes.length, dataBytes.length);
+        frame.put(2, KIND_RESPONSE);
+        frame.put(3, (byte) status.ordinal());
+        frame.put(4, (byte) (resource != null ? resource.ordinal() + 1 : 0));
+        frame.put(5, (byte) dataType.ordinal());
+        return frame.put(groupBytes).put(dataBytes).array();
+    }
+
+    /**
+     * Encode a response whose data already is UTF-8 as a v1 text frame,
+     * including its trailing line terminator, the data is copied as is.
+     */
+    public static byte[] encodeTextResponse(
+            ResponseStatus status,
+            ResponseResource resource,
+            DataType dataType,
+            String group,
+            byte[] dataBytes) {
+        byte[] head = ("STATUS:" + status.name()
+                + "\nRESOURCE:" + (resource != null ? resource.name() : "")
+                + "\nDATA_TYPE:" + dataType.name()
+                + "\nGROUP:" + (group != null ? group : "")
+                + "\nDATA:").getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[head.length + dataBytes.length + TEXT_RESPONSE_END.length];
+        System.arraycopy(head, 0, frame, 0, head.length);
+        System.arraycopy(dataBytes, 0, frame, head.length, dataBytes.length);
+        System.arraycopy(TEXT_RESPONSE_END, 0, frame, head.length + dataBytes.length, TEXT_RESPONSE_END.length);
+        return frame;
+    }
+
+    /**
+     * @return {@code value} as UTF-8, an empty array for null
+     */
+    public static byte[] utf8(String value) {
+        return value == null || value.isEmpty() ? EMPTY : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Validate a complete request header and return the length of the body
+     * following it.
+     *
+     * @param header buffer holding at least {@link #HEADER_SIZE} bytes from
+     *               position 0
+     * @throws IOException if the header is malformed or the frame too large
+     */
+    public static int bodyLength(ByteBuffer header) throws IOException {
+        return bodyLength(header, MAX_FRAME_BYTES);
+    }
+
+    /**
+     * Same as {@link #bodyLength(ByteBuffer)} with another limit, e.g.
+     * {@link #MAX_RESPONSE_BYTES} when reading responses.
+     */
+    public static int bodyLength(ByteBuffer header, int maxBytes) throws IOException {
+        if (header.get(0) != MAGIC || header.get(1) != BINARY_VERSION) {
+            throw new IOException("Unsupported frame header");
+        }
+        long length = (long) header.getChar(8) + header.getChar(10) + header.getChar(12) + header.getInt(16);
+        if (header.getInt(16) < 0 || length > maxBytes) {
+            throw new IOException("Frame too large");
+        }
+        return (int) length;
+    }
+
+    /**
+     * Decode a v2 request.
+     *
+     * @param header the frame header, from position 0
+     * @param body   the frame body, from position 0 up to its limit
+     */
+    public static RequestParser decodeRequest(ByteBuffer header, ByteBuffer body) throws Exception {
+        if (header.get(2) != KIND_REQUEST) {
+            throw new Exception("Expected a request frame");
+        }
+        RequestIntent intent = ordinal(RequestIntent.values(), header.get(3), "intent");
+        int usernameLength = header.getChar(8);
+        int passwordLength = header.getChar(10);
+        int groupLength = header.getChar(12);
+        int dataLength = header.getInt(16);
+
+        int offset = 0;
+        Credentials credentials = null;
+        if ((header.get(6) & FLAG_CREDENTIALS) != 0) {
+            credentials = new Credentials(
+                    string(body, offset, usernameLength),
+                    string(body, offset + usernameLength, passwordLength));
+        }
+        offset += usernameLength + passwordLength;
+        String group = string(body, offset, groupLength);
+        String data = string(body, offset + groupLength, dataLength);
+        return new RequestParser(intent, credentials, group, data);
+    }
+
+    /**
+     * Decode a v2 response.
+     *
+     * @param header the frame header, from position 0
+     * @param body   the frame body, from position 0 up to its limit
+     */
+    public static ResponseParser decodeResponse(ByteBuffer header, ByteBuffer body) throws Exception {
+        if (header.get(2) != KIND_RESPONSE) {
+            throw new Exception("Expected a response frame");
+        }
+        ResponseStatus status = ordinal(ResponseStatus.values(), header.get(3), "status");
+        int resourceCode = header.get(4) & 0xFF;
+        ResponseResource resource = resourceCode == 0
+                ? null
+                : ordinal(ResponseResource.values(), (byte) (resourceCode - 1), "resource");
+        DataType dataType = ordinal(DataType.values(), header.get(5), "data type");
+        int groupLength = header.getChar(12);
+        int dataLength = header.getInt(16);
+
+        int offset = header.getChar(8) + header.getChar(10);
+        String group = string(body, offset, groupLength);
+        String data = string(body, offset + groupLength, dataLength);
+        return new ResponseParser(status, resource, dataType, group, data);
+    }
+
+    // Sizes are only limited when frames are read, see bodyLength
+    private static ByteBuffer header(int usernameLength, int passwordLength, int groupLength, int dataLength) {
+        int bodyLength = usernameLength + passwordLength + groupLength + dataLength;
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + bodyLength);
+        frame.put(0, MAGIC);
+        frame.put(1, (byte) BINARY_VERSION);
+        frame.putChar(8, (char) usernameLength);
+        frame.putChar(10, (char) passwordLength);
+        frame.putChar(12, (char) groupLength);
+        frame.putInt(16, dataLength);
+        return frame.position(HEADER_SIZE);
+    }
+
+    private static String string(ByteBuffer body, int offset, int length) throws Exception {
+        if (length == 0) {
+            return "";
+        }
+        if (offset + length > body.limit()) {
+            throw new Exception("Truncated frame body");
+        }
+        if (body.hasArray()) {
+            return new String(body.array(), body.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        body.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static <E extends Enum<E>> E ordinal(E[] values, byte code, String name) throws Exception {
+        int index = code & 0xFF;
+        if (index >= values.length) {
+            throw new Exception("Invalid " + name + " code " + index);
+        }
+        return values[index];
+    }
+}
@@ -1,5 +1,7 @@
 package com.rasel.common;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * A builder class for creating requests to be sent to the Rasel server.
  * This class provides a fluent API for constructing requests with different intents,
@@ -9,6 +11,10 @@ package com.rasel.common;
  * Each request has an intent, and optional credentials, group, and data fields.
  * The request is terminated by the "END_OF_REQUEST" string.
  * </p>
+ * <p>
+ * The same request can also be encoded as a length-prefixed binary frame,
+ * see {@link Protocol}.
+ * </p>
  */
 public class RequestBuilder {
 
@@ -71,6 +77,21 @@ public class RequestBuilder {
         return sb.append("END_OF_REQUEST").toString().trim(); // remove the last \n
     }
 
+    /**
+     * Encode the request as a complete frame for the given protocol version,
+     * text frames include their trailing line terminator.
+     *
+     * @param protocolVersion {@link Protocol#TEXT_VERSION} or
+     *                        {@link Protocol#BINARY_VERSION}
+     * @return the frame bytes, ready to be written to the socket
+     */
+    public byte[] encode(int protocolVersion) {
+        if (protocolVersion == Protocol.BINARY_VERSION) {
+            return Protocol.encodeRequest(intent, credentials, group, data);
+        }
+        return (getRequest() + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
     // --- Utility methods for common requests ---
 
     /**
@@ -218,6 +239,44 @@ public class RequestBuilder {
         ).getRequest();
     }
 
+    /**
+     * Creates a request for the latest messages of a group.
+     *
+     * @param credentials The user's credentials.
+     * @param groupName   The name of the group.
+     * @return The formatted get messages request string.
+     */
+    public static String getMessagesRequest(
+        Credentials credentials,
+        String groupName
+    ) {
+        return new RequestBuilder(
+            RequestIntent.GET_MESSAGES,
+            credentials,
+            groupName,
+            null
+        ).getRequest();
+    }
+
+    /**
+     * Builds the DATA query of a GET_MESSAGES request.
+     *
+     * @param before exclusive upper sequence bound, or a negative value
+     * @param after  exclusive lower sequence bound, or a negative value
+     * @param limit  maximum number of messages, the server caps it
+     * @return the query, e.g. {@code before=120&limit=50}
+     */
+    public static String messagesQuery(long before, long after, int limit) {
+        StringBuilder sb = new StringBuilder();
+        if (before >= 0) {
+            sb.append("before=").append(before).append('&');
+        }
+        if (after >= 0) {
+            sb.append("after=").append(after).append('&');
+        }
+        return sb.append("limit=").append(limit).toString();
+    }
+
     // --- Builder-style methods for chaining (optional) ---
 
     /**
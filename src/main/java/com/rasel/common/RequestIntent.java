@@ -8,5 +8,6 @@ public enum RequestIntent {
     GET_USERS,
     AUTH,
     SIGNUP,
-    ADD
+    ADD,
+    GET_MESSAGES
 }
@@ -1,9 +1,5 @@
 package com.rasel.common;
 
-import com.rasel.common.Credentials;
-import com.rasel.common.RequestIntent;
-import java.util.HashMap;
-
 /**
  * parse the clientMessage
  * protocol string format speciifcations for client REQUEST :
@@ -21,69 +17,83 @@ import java.util.HashMap;
  * DATA: {response data, can be anything}
  *
  */
-public class RequestParser extends Parser {
+public class RequestParser {
 
-    private RequestIntent intent;
-    private Credentials credentials;
-    private String group;
-    private String data;
+    private final RequestIntent intent;
+    private final Credentials credentials;
+    private final String group;
+    private final String data;
 
     private static final String INTENT = "INTENT";
     private static final String CREDENTIALS = "CREDENTIALS";
     private static final String GROUP = "GROUP";
     private static final String DATA = "DATA";
 
-    static {
-        // List of macro keys to initialize
-        String[] macroKeys = { INTENT, CREDENTIALS, GROUP, DATA };
-        for (String key : macroKeys) {
-            macros.put(key, "");
-        }
-    }
-
     /**
-     * dynamically parse intent to corresponding enum value
+     * parse intent to corresponding enum value
      *
      * @param intentString
      * @return
      * @throws Exception
      */
-    RequestIntent parseIntent(String intentString) throws Exception {
-        for (RequestIntent intent : RequestIntent.values()) {
-            if (intent.name().equals(intentString)) {
-                return intent;
-            }
+    static RequestIntent parseIntent(String intentString) throws Exception {
+        try {
+            return RequestIntent.valueOf(intentString);
+        } catch (IllegalArgumentException e) {
+            throw new Exception("Invalid intent \'" + intentString + "'");
         }
-        throw new Exception("Invalid intent \'" + intentString + "'");
     }
 
     /**
+     * Parse a request frame, fields that are missing default to an empty
+     * string (credentials to null).
      *
      * @param stream
      */
     public RequestParser(String stream) throws Exception {
-        super(stream);
-        // validate INTENT value
-        String intentString = macros.get(INTENT);
+        // INTENT, CREDENTIALS, GROUP, DATA
+        final String[] fields = { "", "", "", "" };
+        Parser.parse(stream, DATA, (key, value) -> {
+            switch (key) {
+                case INTENT -> fields[0] = value;
+                case CREDENTIALS -> fields[1] = value;
+                case GROUP -> fields[2] = value;
+                case DATA -> fields[3] = value;
+                default -> {
+                }
+            }
+        });
 
-        intent = parseIntent(intentString);
+        // validate INTENT value
+        intent = parseIntent(fields[0]);
 
-        String credString = macros.get(CREDENTIALS);
         /**
          * build a Credentials object if username and password was provided,if not
          * username can't have ":" Character
          */
-        String[] credentialsArray = credString.split(":", 2);
-
-        if (credentialsArray.length == 2) {
-            String username = credentialsArray[0];
-            String password = credentialsArray[1];
+        String credString = fields[1];
+        int separator = credString.indexOf(':');
+        if (separator >= 0) {
+            String username = credString.substring(0, separator);
+            String password = credString.substring(separator + 1);
             credentials = new Credentials(username, password);
+        } else {
+            credentials = null;
         }
 
         // TODO: validate group and data value later
-        group = macros.get(GROUP);
-        data = macros.get(DATA);
+        group = fields[2];
+        data = fields[3];
+    }
+
+    /**
+     * Build a request from already decoded fields (binary frames).
+     */
+    RequestParser(RequestIntent intent, Credentials credentials, String group, String data) {
+        this.intent = intent;
+        this.credentials = credentials;
+        this.group = group;
+        this.data = data;
     }
 
     /**
@@ -171,6 +171,30 @@ public class ResponseBuilder implements Response {
         return sb.append(END_OF_RESPONSE).toString().trim();
     }
 
+    /**
+     * Encode the response as a complete frame for the given protocol version,
+     * text frames include their trailing line terminator.
+     *
+     * @param protocolVersion {@link Protocol#TEXT_VERSION} or
+     *                        {@link Protocol#BINARY_VERSION}
+     * @return the frame bytes, ready to be written to the socket
+     */
+    public byte[] encode(int protocolVersion) {
+        if (protocolVersion == Protocol.BINARY_VERSION) {
+            return Protocol.encodeResponse(status, resource, dataType, group, data);
+        }
+        return Protocol.encodeTextResponse(status, resource, dataType, group, Protocol.utf8(data));
+    }
+
+    /**
+     * Snapshot this response into an immutable frame that encodes itself at
+     * most once per protocol version, used to send the same response to many
+     * clients.
+     */
+    public ResponseFrame toFrame() {
+        return new ResponseFrame(this);
+    }
+
     @Deprecated
     public String getResponse() {
         return getResponseString();
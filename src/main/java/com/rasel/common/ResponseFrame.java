@@ -0,0 +1,97 @@
+package com.rasel.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable snapshot of a response that is encoded at most once per
+ * protocol version.
+ *
+ * A broadcast builds one frame and hands it to every recipient, all of them
+ * then share the same encoded bytes instead of re-building the response
+ * string for each member. {@link #buffer(int)} returns a fresh read-only view
+ * over those bytes, so each recipient can track its own write position.
+ *
+ * The data is held as UTF-8 and copied into either wire format as is, so a
+ * payload that already exists as bytes, such as a serialized message, is
+ * never decoded into a string and encoded again on its way out.
+ */
+public final class ResponseFrame {
+
+    private final ResponseStatus status;
+
+    private final ResponseResource resource;
+
+    private final DataType dataType;
+
+    private final String group;
+
+    private final byte[] data;
+
+    // lazily encoded, a racing encode just produces an identical array
+    private volatile byte[] text;
+
+    private volatile byte[] binary;
+
+    ResponseFrame(ResponseBuilder response) {
+        // private copy, later changes to the caller's builder don't leak in
+        this(response.getStatus(), response.getResource(), response.getDataType(), response.getGroup(),
+                Protocol.utf8(response.getData()));
+    }
+
+    private ResponseFrame(ResponseStatus status, ResponseResource resource, DataType dataType, String group,
+            byte[] data) {
+        this.status = status != null ? status : ResponseStatus.OK;
+        this.resource = resource;
+        this.dataType = dataType != null ? dataType : DataType.TEXT;
+        this.group = group;
+        this.data = data;
+    }
+
+    /**
+     * Frame a response whose data is already encoded.
+     *
+     * @param data UTF-8 data, read by the frame and must not be modified
+     *             afterwards, it may be shared with other frames
+     */
+    public static ResponseFrame of(ResponseStatus status, ResponseResource resource, DataType dataType,
+            String group, byte[] data) {
+        return new ResponseFrame(status, resource, dataType, group, data != null ? data : new byte[0]);
+    }
+
+    /**
+     * @return the encoded frame, shared between callers, must not be modified
+     */
+    public byte[] bytes(int protocolVersion) {
+        if (protocolVersion == Protocol.BINARY_VERSION) {
+            byte[] encoded = binary;
+            if (encoded == null) {
+                binary = encoded = Protocol.encodeResponse(status, resource, dataType, group, data);
+            }
+            return encoded;
+        }
+        byte[] encoded = text;
+        if (encoded == null) {
+            text = encoded = Protocol.encodeTextResponse(status, resource, dataType, group, data);
+        }
+        return encoded;
+    }
+
+    /**
+     * @return a new read-only view over the encoded frame
+     */
+    public ByteBuffer buffer(int protocolVersion) {
+        return ByteBuffer.wrap(bytes(protocolVersion)).asReadOnlyBuffer();
+    }
+
+    public ResponseStatus getStatus() {
+        return status;
+    }
+
+    public ResponseResource getResource() {
+        return resource;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+}
@@ -2,13 +2,17 @@ package com.rasel.common;
 
 import com.rasel.server.logging.Log;
 
-public class ResponseParser extends Parser {
-
-    ResponseStatus status;
-    DataType dataType;
-    ResponseResource resource;
-    String group;
-    String data;
+/**
+ * Parse a response frame into an immutable response, missing GROUP and DATA
+ * default to an empty string.
+ */
+public class ResponseParser {
+
+    private final ResponseStatus status;
+    private final DataType dataType;
+    private final ResponseResource resource;
+    private final String group;
+    private final String data;
 
     private static final String STATUS = "STATUS";
     private static final String RESOURCE = "RESOURCE";
@@ -16,47 +20,63 @@ public class ResponseParser extends Parser {
     private static final String GROUP = "GROUP";
     private static final String DATA = "DATA";
 
-    static {
-    String[] macroKeys = { STATUS, RESOURCE, DATA_TYPE, GROUP, DATA };
-        for (String key : macroKeys) {
-            macros.put(key, "");
-        }
-    }
-
     public ResponseParser(String stream) throws Exception {
-        super(stream);
+        // STATUS, RESOURCE, DATA_TYPE, GROUP, DATA
+        final String[] fields = { "", "", "", "", "" };
+        Parser.parse(stream, DATA, (key, value) -> {
+            switch (key) {
+                case STATUS -> fields[0] = value;
+                case RESOURCE -> fields[1] = value;
+                case DATA_TYPE -> fields[2] = value;
+                case GROUP -> fields[3] = value;
+                case DATA -> fields[4] = value;
+                default -> {
+                }
+            }
+        });
 
-        String statusString = macros.get(STATUS);
+        String statusString = fields[0];
         try {
             status = ResponseStatus.valueOf(statusString.trim().toUpperCase());
-        } catch (IllegalArgumentException | NullPointerException e) {
+        } catch (IllegalArgumentException e) {
             Log.error("Invalid response status: %s", statusString);
             throw new Exception("status: {" + statusString + "} is invalid");
         }
 
-        String resourceString = macros.get(RESOURCE);
-        if (resourceString != null && !resourceString.trim().isEmpty()) {
+        String resourceString = fields[1];
+        ResponseResource parsedResource = null;
+        if (!resourceString.isBlank()) {
             try {
-                resource = ResponseResource.valueOf(resourceString.trim().toUpperCase());
+                parsedResource = ResponseResource.valueOf(resourceString.trim().toUpperCase());
             } catch (IllegalArgumentException e) {
                 Log.warn("Invalid resource type: %s", resourceString);
-                resource = null;
             }
-        } else {
-            resource = null;
         }
+        resource = parsedResource;
 
-        String dataTypeString = macros.get(DATA_TYPE);
+        String dataTypeString = fields[2];
         try {
             dataType = DataType.valueOf(dataTypeString.trim().toUpperCase());
-        } catch (IllegalArgumentException | NullPointerException e) {
+        } catch (IllegalArgumentException e) {
             Log.error("Invalid data type: %s", dataTypeString);
             throw new Exception("data type: {" + dataTypeString + "} is invalid");
         }
 
-        group = macros.get(GROUP);
-        data = macros.get(DATA);
-    // sender info is part of DATA (JSON) when resource=MESSAGES
+        group = fields[3];
+        data = fields[4];
+        // sender info is part of DATA (JSON) when resource=MESSAGES
+    }
+
+    /**
+     * Build a response from already decoded fields (binary frames), or a view
+     * a client derives from earlier responses.
+     */
+    public ResponseParser(ResponseStatus status, ResponseResource resource, DataType dataType, String group, String data) {
+        this.status = status;
+        this.resource = resource;
+        this.dataType = dataType;
+        this.group = group;
+        this.data = data;
     }
 
     @Override
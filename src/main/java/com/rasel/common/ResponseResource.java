@@ -10,4 +10,5 @@ public enum ResponseResource {
     MESSAGES,
     AUTH_SUCCESS,
     AUTH_FAILURE,
+    GROUP_DELTA,
 }
@@ -239,10 +239,10 @@ public class ChatFrame extends JFrame {
         // Load any cached messages for this group
         reloadMessagesViewFor(group);
 
-        // Optionally, request history if supported by protocol (will merge when arrives)
+        // Request the latest history page, replaces the cache when it arrives
         ClientInterface client = GuiClient.getClient();
         if (client != null) {
-            client.requestMessages(group); // no-op if not implemented
+            client.requestMessages(group);
         }
     }
 
@@ -362,7 +362,7 @@ public class ChatFrame extends JFrame {
             return new String[0];
         String trimmed = data.trim();
 
-        // Try JSON array of objects (from GroupSerializer)
+        // Try JSON array of objects (group views from Codecs)
         if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
             try {
                 java.util.List<RawGroup> groups = MAPPER.readValue(
@@ -687,15 +687,13 @@ public class ChatFrame extends JFrame {
             String json = resp.getData();
             String trimmed = json != null ? json.trim() : "";
 
-            // Support both single message object and array of messages
+            // An array is a history page, a single object a live message
             if (trimmed.startsWith("[")) {
                 java.util.List<IncomingMessage> list = MAPPER.readValue(
                         trimmed,
                         new com.fasterxml.jackson.core.type.TypeReference<java.util.List<IncomingMessage>>() {});
                 if (list == null) return;
-                for (IncomingMessage dto : list) {
-                    handleOneIncoming(dto);
-                }
+                handleHistory(resp.getGroup(), list);
             } else {
                 IncomingMessage dto = MAPPER.readValue(trimmed, IncomingMessage.class);
                 handleOneIncoming(dto);
@@ -728,6 +726,23 @@ public class ChatFrame extends JFrame {
         }
     }
 
+    // Replace the cached messages of a group with the latest history page, the
+    // server's log includes our own messages so nothing is lost
+    private void handleHistory(String group, List<IncomingMessage> page) {
+        if (group == null || group.isBlank()) return;
+        List<ChatMessage> list = new ArrayList<>(page.size());
+        for (IncomingMessage dto : page) {
+            if (dto == null) continue;
+            String sender = dto.senderName != null ? dto.senderName : "unknown";
+            String content = dto.content != null ? dto.content : "";
+            list.add(new ChatMessage(sender, content, sender.equalsIgnoreCase(userDisplayName)));
+        }
+        messagesByGroup.put(group, list);
+        if (Objects.equals(group, groupsList.getSelectedValue())) {
+            reloadMessagesViewFor(group);
+        }
+    }
+
     private void scrollMessagesToEnd() {
         int last = messagesModel.getSize() - 1;
         if (last >= 0) {
@@ -784,6 +799,7 @@ public class ChatFrame extends JFrame {
         public String senderName; // preferred for display
         public String content;
         public String timestamp;
+        public long sequence;
     }
 
     // NEW: Raw shape for groups JSON (fallback to avoid coupling to server classes)
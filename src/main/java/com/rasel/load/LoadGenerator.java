@@ -0,0 +1,331 @@
+package com.rasel.load;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.rasel.client.Client;
+import com.rasel.common.Credentials;
+import com.rasel.common.GroupDeltaPayload;
+import com.rasel.common.ResponseParser;
+import com.rasel.server.ExecutionMode;
+import com.rasel.server.Server;
+import com.rasel.server.ServerConfig;
+import com.rasel.server.logging.Log;
+import com.rasel.server.metrics.Histogram;
+
+/**
+ * Headless load generator speaking the Rasel protocol through {@link Client}.
+ *
+ * A run connects {@code sessions} users, each on its own virtual threads,
+ * signs them up under names unique to the run, creates the groups and adds
+ * their members, then sends messages at the target rate for the warmup and
+ * the measured duration. Sending is open-loop: every session has a fixed
+ * schedule and each message carries the time it was scheduled for, so the
+ * send-to-receive latency recorded by the receiving sessions includes any
+ * time the sender fell behind. Latencies of messages scheduled during the
+ * warmup are ignored.
+ *
+ * With {@code --in-process} a blocking {@link Server} on virtual threads is
+ * started in the same JVM on {@code --port}, which makes runs comparable
+ * between builds without any setup; per-message server logging is raised to
+ * WARN unless LOG_LEVEL is set.
+ *
+ * Usage: java -cp rasel-server.jar com.rasel.load.LoadGenerator --in-process
+ * --sessions=500 --rate=5000
+ */
+public final class LoadGenerator {
+
+    // Messages start with the marker and the scheduled send time in nanoseconds
+    private static final String MARKER = "#lg:";
+    private static final long SETUP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final LoadSettings settings;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final Histogram latency = new Histogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder expected = new LongAdder();
+    private final LongAdder received = new LongAdder();
+
+    private final List<Session> sessions = new ArrayList<>();
+    // Members per group name, read-only once sending starts
+    private final Map<String, Integer> groupMembers = new HashMap<>();
+
+    // Messages scheduled before this System.nanoTime() are warmup
+    private volatile long measureFrom = Long.MAX_VALUE;
+
+    public LoadGenerator(LoadSettings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings;
+        try {
+            settings = LoadSettings.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadSettings.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        Server server = null;
+        if (settings.inProcess()) {
+            if (System.getenv("LOG_LEVEL") == null) {
+                Log.setLevel(Log.Level.WARN);
+            }
+            server = new Server(ServerConfig.builder()
+                    .port(settings.port())
+                    .executionMode(ExecutionMode.VIRTUAL)
+                    .build());
+            Thread.ofPlatform().name("load-server").daemon(true).start(server::acceptConnections);
+            settings = settings.withPort(server.getPort());
+        }
+        LoadGenerator generator = new LoadGenerator(settings);
+        boolean delivered;
+        try {
+            generator.run();
+            generator.printReport(System.out);
+            delivered = generator.received.sum() > 0;
+        } finally {
+            generator.close();
+            if (server != null) {
+                server.shutdown();
+            }
+        }
+        System.exit(delivered ? 0 : 1);
+    }
+
+    /**
+     * Set up the sessions and groups, send for the warmup and the measured
+     * duration and wait for the messages in flight. The sessions stay
+     * connected until {@link #close()}.
+     */
+    public void run() throws Exception {
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            connect(threads);
+            createGroups();
+            send(threads);
+            drain();
+        }
+    }
+
+    /**
+     * Disconnect every session.
+     */
+    public void close() {
+        for (Session session : sessions) {
+            try {
+                session.client.disconnect();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void connect(ExecutorService threads) throws Exception {
+        List<CompletableFuture<Session>> connecting = new ArrayList<>();
+        for (int i = 0; i < settings.sessions(); i++) {
+            String username = "load-" + runId + "-" + i;
+            connecting.add(CompletableFuture.supplyAsync(() -> signup(username), threads));
+        }
+        for (CompletableFuture<Session> session : connecting) {
+            sessions.add(session.join());
+        }
+        Log.info("Connected %d sessions", sessions.size());
+    }
+
+    private Session signup(String username) {
+        Client client = new Client(settings.host(), settings.port(), settings.protocol(), ExecutionMode.VIRTUAL);
+        CompletableFuture<Boolean> authenticated = new CompletableFuture<>();
+        client.onAuthSuccess(response -> authenticated.complete(true));
+        client.onAuthFailure(response -> authenticated.complete(false));
+        client.onMessages(this::onMessage);
+        try {
+            client.connect();
+            client.signup(new Credentials(username, "load"));
+            if (!authenticated.get(SETUP_TIMEOUT_NANOS, TimeUnit.NANOSECONDS)) {
+                throw new IllegalStateException("Signup failed for " + username);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Session " + username + " could not start: " + e.getMessage(), e);
+        }
+        return new Session(username, client);
+    }
+
+    /**
+     * Create the groups from their admins' sessions and wait until every
+     * member's group cache lists all of its groups.
+     */
+    private void createGroups() throws Exception {
+        Random random = new Random(42);
+        int count = settings.sessions();
+        for (int g = 0; g < settings.groups(); g++) {
+            int size = settings.membership() == LoadSettings.Membership.UNIFORM
+                    ? settings.groupSize()
+                    : Math.max(2, settings.groupSize() / (g + 1));
+            size = Math.min(size, count);
+            String name = "load-" + runId + "-g" + g;
+            Session admin = sessions.get(g % count);
+            admin.client.requestCreateGroup(name);
+            admin.groups.add(name);
+
+            Set<Integer> members = new HashSet<>();
+            members.add(g % count);
+            while (members.size() < size) {
+                int member = random.nextInt(count);
+                if (members.add(member)) {
+                    Session session = sessions.get(member);
+                    admin.client.requestAddUserToGroup(name, session.username);
+                    session.groups.add(name);
+                }
+            }
+            groupMembers.put(name, size);
+        }
+
+        long deadline = System.nanoTime() + SETUP_TIMEOUT_NANOS;
+        for (Session session : sessions) {
+            while (!session.hasAllGroups()) {
+                if (System.nanoTime() > deadline) {
+                    throw new Exception("Group setup timed out for " + session.username);
+                }
+                Thread.sleep(10);
+            }
+        }
+        Log.info("Created %d groups", settings.groups());
+    }
+
+    private void send(ExecutorService threads) throws Exception {
+        List<Session> senders = sessions.stream().filter(session -> !session.groups.isEmpty()).toList();
+        // Every sender gets the same share of the rate
+        long interval = (long) (senders.size() * 1e9 / settings.rate());
+        long start = System.nanoTime();
+        measureFrom = start + settings.warmup().toNanos();
+        long end = measureFrom + settings.duration().toNanos();
+
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+        for (Session session : senders) {
+            // Spread the first sends over one interval
+            long first = start + ThreadLocalRandom.current().nextLong(Math.max(1, interval));
+            running.add(CompletableFuture.runAsync(() -> sendLoop(session, first, interval, end), threads));
+        }
+        Log.info("Sending %.0f messages/s from %d sessions for %d s (+%d s warmup)",
+                settings.rate(), senders.size(), settings.duration().toSeconds(), settings.warmup().toSeconds());
+        CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void sendLoop(Session session, long first, long interval, long end) {
+        String padding = "x".repeat(Math.max(0, settings.messageBytes() - 24));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (long scheduled = first; scheduled < end; scheduled += interval) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int group = random.nextInt(session.groups.size());
+            String name = session.groups.get(group);
+            session.client.sendMessage(name, MARKER + scheduled + ":" + padding);
+            sent.increment();
+            if (scheduled >= measureFrom) {
+                expected.add(groupMembers.get(name) - 1);
+            }
+        }
+    }
+
+    private void onMessage(ResponseParser response) {
+        long now = System.nanoTime();
+        String data = response.getData();
+        int marker = data != null ? data.indexOf(MARKER) : -1;
+        if (marker < 0) {
+            return;
+        }
+        int from = marker + MARKER.length();
+        int to = from;
+        while (to < data.length() && (Character.isDigit(data.charAt(to)) || data.charAt(to) == '-')) {
+            to++;
+        }
+        long scheduled;
+        try {
+            scheduled = Long.parseLong(data, from, to, 10);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (scheduled >= measureFrom) {
+            latency.record(now - scheduled);
+            received.increment();
+        }
+    }
+
+    /**
+     * Wait for the messages in flight, until everything expected arrived or
+     * nothing arrived for a while.
+     */
+    private void drain() throws InterruptedException {
+        long last = received.sum();
+        long quietSince = System.nanoTime();
+        while (received.sum() < expected.sum()) {
+            Thread.sleep(50);
+            long now = received.sum();
+            if (now != last) {
+                last = now;
+                quietSince = System.nanoTime();
+            } else if (System.nanoTime() - quietSince > DRAIN_TIMEOUT_NANOS) {
+                break;
+            }
+        }
+    }
+
+    public void printReport(PrintStream out) {
+        Histogram.Snapshot snapshot = latency.snapshot();
+        long expectedCount = expected.sum();
+        long receivedCount = received.sum();
+        double seconds = settings.warmup().plus(settings.duration()).toMillis() / 1000.0;
+        out.printf("sessions=%d groups=%d groupSize=%d membership=%s protocol=v%d rate=%.0f/s messageBytes=%d%n",
+                settings.sessions(), settings.groups(), settings.groupSize(), settings.membership(),
+                settings.protocol(), settings.rate(), settings.messageBytes());
+        out.printf("sent %d (%.1f/s), received %d of %d expected (%.2f%%)%n",
+                sent.sum(), sent.sum() / seconds, receivedCount, expectedCount,
+                expectedCount == 0 ? 0 : 100.0 * receivedCount / expectedCount);
+        out.printf("latency us: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f mean=%.1f%n",
+                snapshot.getValueAtPercentile(50) / 1000.0,
+                snapshot.getValueAtPercentile(90) / 1000.0,
+                snapshot.getValueAtPercentile(99) / 1000.0,
+                snapshot.getValueAtPercentile(99.9) / 1000.0,
+                snapshot.getMax() / 1000.0,
+                snapshot.getMean() / 1000.0);
+    }
+
+    private static final class Session {
+
+        final String username;
+        final Client client;
+        // Written during setup, read-only once sending starts
+        final List<String> groups = new ArrayList<>();
+
+        Session(String username, Client client) {
+            this.username = username;
+            this.client = client;
+        }
+
+        boolean hasAllGroups() {
+            Set<String> known = new HashSet<>();
+            for (GroupDeltaPayload.GroupView group : client.getGroupCache().getGroups()) {
+                known.add(group.name);
+            }
+            return known.containsAll(groups);
+        }
+    }
+}
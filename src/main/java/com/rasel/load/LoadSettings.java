@@ -0,0 +1,146 @@
+package com.rasel.load;
+
+import java.time.Duration;
+import java.util.Locale;
+
+import com.rasel.common.Protocol;
+
+/**
+ * Parameters of a {@link LoadGenerator} run.
+ *
+ * @param host           server to connect to
+ * @param port           server port
+ * @param inProcess      start a {@link com.rasel.server.Server} in this
+ *                       process instead of using a running one
+ * @param protocol       wire format the sessions send,
+ *                       {@link Protocol#TEXT_VERSION} or
+ *                       {@link Protocol#BINARY_VERSION}
+ * @param sessions       concurrently connected users
+ * @param groups         groups created for the run
+ * @param groupSize      members per group, the largest group with
+ *                       {@link Membership#SKEWED}
+ * @param membership     how group sizes are distributed
+ * @param rate           messages sent per second over all sessions
+ * @param warmup         sending time before latencies are recorded
+ * @param duration       sending time with latencies recorded
+ * @param messageBytes   approximate size of each message
+ */
+public record LoadSettings(
+        String host,
+        int port,
+        boolean inProcess,
+        int protocol,
+        int sessions,
+        int groups,
+        int groupSize,
+        Membership membership,
+        double rate,
+        Duration warmup,
+        Duration duration,
+        int messageBytes) {
+
+    public enum Membership {
+        /** every group has {@code groupSize} members */
+        UNIFORM,
+        /** group i has {@code groupSize / (i + 1)} members, a few large groups and a long tail */
+        SKEWED,
+    }
+
+    public static final LoadSettings DEFAULT = new LoadSettings(
+            "localhost",
+            12345,
+            false,
+            Protocol.TEXT_VERSION,
+            100,
+            10,
+            20,
+            Membership.UNIFORM,
+            1000,
+            Duration.ofSeconds(5),
+            Duration.ofSeconds(30),
+            64);
+
+    static final String USAGE = """
+            Usage: LoadGenerator [options]
+              --host=HOST               server host (localhost)
+              --port=PORT               server port (12345), 0 for any with --in-process
+              --in-process              start a server in this process
+              --protocol=1|2            text or binary frames (1)
+              --sessions=N              connected users (100)
+              --groups=N                groups (10)
+              --group-size=N            members per group (20)
+              --membership=uniform|skewed  group size distribution (uniform)
+              --rate=N                  messages per second, all sessions together (1000)
+              --warmup=SECONDS          sending time not measured (5)
+              --duration=SECONDS        measured sending time (30)
+              --message-bytes=N         message size (64)""";
+
+    /**
+     * @return these settings with another server port
+     */
+    public LoadSettings withPort(int port) {
+        return new LoadSettings(host, port, inProcess, protocol, sessions, groups, groupSize, membership, rate,
+                warmup, duration, messageBytes);
+    }
+
+    /**
+     * @throws IllegalArgumentException for unknown options or invalid values
+     */
+    public static LoadSettings parse(String[] args) {
+        LoadSettings settings = DEFAULT;
+        String host = settings.host;
+        int port = settings.port;
+        boolean inProcess = settings.inProcess;
+        int protocol = settings.protocol;
+        int sessions = settings.sessions;
+        int groups = settings.groups;
+        int groupSize = settings.groupSize;
+        Membership membership = settings.membership;
+        double rate = settings.rate;
+        Duration warmup = settings.warmup;
+        Duration duration = settings.duration;
+        int messageBytes = settings.messageBytes;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            try {
+                if (arg.startsWith("--host=")) {
+                    host = value;
+                } else if (arg.startsWith("--port=")) {
+                    port = Integer.parseInt(value);
+                } else if (arg.equals("--in-process")) {
+                    inProcess = true;
+                } else if (arg.startsWith("--protocol=")) {
+                    protocol = Integer.parseInt(value);
+                } else if (arg.startsWith("--sessions=")) {
+                    sessions = Integer.parseInt(value);
+                } else if (arg.startsWith("--groups=")) {
+                    groups = Integer.parseInt(value);
+                } else if (arg.startsWith("--group-size=")) {
+                    groupSize = Integer.parseInt(value);
+                } else if (arg.startsWith("--membership=")) {
+                    membership = Membership.valueOf(value.toUpperCase(Locale.ROOT));
+                } else if (arg.startsWith("--rate=")) {
+                    rate = Double.parseDouble(value);
+                } else if (arg.startsWith("--warmup=")) {
+                    warmup = Duration.ofSeconds(Long.parseLong(value));
+                } else if (arg.startsWith("--duration=")) {
+                    duration = Duration.ofSeconds(Long.parseLong(value));
+                } else if (arg.startsWith("--message-bytes=")) {
+                    messageBytes = Integer.parseInt(value);
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value in " + arg);
+            }
+        }
+        if (protocol != Protocol.TEXT_VERSION && protocol != Protocol.BINARY_VERSION) {
+            throw new IllegalArgumentException("Unsupported protocol version " + protocol);
+        }
+        if (sessions < 2 || groups < 1 || groupSize < 2 || rate <= 0 || duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Need at least 2 sessions, 1 group of 2, a rate and a duration");
+        }
+        return new LoadSettings(host, port, inProcess, protocol, sessions, groups, groupSize, membership, rate,
+                warmup, duration, messageBytes);
+    }
+}
@@ -0,0 +1,28 @@
+package com.rasel.server;
+
+/**
+ * Limits applied to every client's outbound queue.
+ *
+ * @param highWatermark queued bytes above which the {@link SlowConsumerPolicy}
+ *                      kicks in
+ * @param lowWatermark  queued bytes below which a {@link SlowConsumerPolicy#DROP}
+ *                      queue accepts frames again
+ * @param policy        what to do with a client that stops reading
+ */
+public record BackpressureSettings(long highWatermark, long lowWatermark, SlowConsumerPolicy policy) {
+
+    public static final BackpressureSettings DEFAULT = new BackpressureSettings(
+            4L * 1024 * 1024,
+            1024 * 1024,
+            SlowConsumerPolicy.DISCONNECT);
+
+    public BackpressureSettings {
+        if (highWatermark <= 0 || lowWatermark < 0 || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException(
+                    "Invalid watermarks high=" + highWatermark + " low=" + lowWatermark);
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Slow consumer policy is required");
+        }
+    }
+}
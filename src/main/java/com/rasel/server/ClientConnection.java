@@ -0,0 +1,48 @@
+package com.rasel.server;
+
+import com.rasel.common.ResponseFrame;
+
+/**
+ * Transport used by a {@link ClientHandler} to talk to its client.
+ *
+ * Keeping the request handling logic behind this interface lets the same
+ * handler run on top of a blocking {@link java.net.Socket} (one thread per
+ * connection) or on a non-blocking NIO channel driven by a reactor thread.
+ */
+interface ClientConnection {
+
+    /**
+     * Queue a single response frame for the client, never blocks on the
+     * network. Frames are written in order by the connection's own writer,
+     * encoded in the protocol version the client last spoke. The frame may be
+     * shared with other connections.
+     *
+     * @param frame the response to send
+     */
+    void send(ResponseFrame frame);
+
+    /**
+     * @return protocol version of the last frame received from the client
+     */
+    int getProtocolVersion();
+
+    /**
+     * @return bytes queued for this client but not written yet
+     */
+    long getQueuedBytes();
+
+    /**
+     * @return frames discarded because the client could not keep up
+     */
+    long getDroppedFrames();
+
+    /**
+     * Close the underlying transport. Safe to call multiple times.
+     */
+    void close();
+
+    /**
+     * @return "host:port" of the remote peer, used for logging
+     */
+    String getRemoteAddress();
+}
@@ -1,31 +1,36 @@
 package com.rasel.server;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.Socket;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.rasel.common.DataType;
+import com.rasel.common.GroupDeltaPayload;
+import com.rasel.common.Protocol;
 import com.rasel.common.RequestParser;
 import com.rasel.common.Response;
 import com.rasel.common.ResponseBuilder;
+import com.rasel.common.ResponseFrame;
 import com.rasel.common.ResponseResource;
 import com.rasel.common.ResponseStatus;
 import com.rasel.server.db.ChatMessage;
+import com.rasel.server.db.Codecs;
 import com.rasel.server.db.DatabaseManager;
 import com.rasel.server.db.Group;
-import com.rasel.server.db.GroupSerializer;
 import com.rasel.server.db.User;
-import com.rasel.server.db.UserSerializer;
 import com.rasel.server.logging.Log;
+import com.rasel.server.metrics.Metrics;
 
 /**
  * TODO: write comprehensive docs for this client handler class. ClientHandler
+ *
+ * The handler holds per-client session state and the request handling logic,
+ * it talks to the client through a {@link ClientConnection} so it can either
+ * own a thread ({@link #run()}, blocking sockets) or be fed complete frames by
+ * a {@link NioReactor} ({@link #onRequest(RequestParser)}).
  */
 public class ClientHandler implements Runnable {
 
-    private Socket clientSocket;
+    private final ClientConnection connection;
 
     private ConnectionManager connectionManager;
 
@@ -33,77 +38,48 @@ public class ClientHandler implements Runnable {
 
     private Boolean isAuthenticated = false;
 
-    private PrintWriter out;
+    private AuthenticationManager authManager;
 
-    private BufferedReader in;
+    private final AtomicBoolean disconnected = new AtomicBoolean(false);
 
-    private AuthenticationManager authManager;
+    // Set when the request being handled was answered with an error, only
+    // touched by the thread handling this client's requests
+    private boolean requestFailed;
 
     // Use DatabaseManager static singletons directly
     public ClientHandler(
             Socket clientSocket,
             User user,
             ConnectionManager connectionManager) {
-        this.clientSocket = clientSocket;
+        this(
+                new SocketConnection(clientSocket, connectionManager.getBackpressureSettings()),
+                user,
+                connectionManager);
+    }
+
+    ClientHandler(
+            ClientConnection connection,
+            User user,
+            ConnectionManager connectionManager) {
+        this.connection = connection;
         this.user = user;
         this.connectionManager = connectionManager;
         this.authManager = new AuthenticationManager();
-
-        try {
-
-            in = new BufferedReader(
-                    new InputStreamReader(clientSocket.getInputStream()));
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
-
-            Log.debug(
-                    "Initialized IO streams for client %s:%d",
-                    clientSocket.getInetAddress().getHostAddress(),
-                    clientSocket.getPort());
-        } catch (IOException e) {
-            Log.error(
-                    "Failed to initialize IO streams for client %s:%d",
-                    e,
-                    clientSocket.getInetAddress().getHostAddress(),
-                    clientSocket.getPort());
-        }
     }
 
     RequestParser getRequest() throws Exception {
-        StringBuilder rb = new StringBuilder();
-        boolean ended = false;
-        String line;
-        int lineCount = 0;
-        final int MAX_LINES = 10000;
-        while ((line = in.readLine()) != null) {
-            if (line.equals("END_OF_REQUEST")) {
-                ended = true;
-                break;
-            }
-            rb.append(line).append("\n");
-            if (++lineCount > MAX_LINES) {
-                throw new Exception("Request too large");
-            }
+        if (!(connection instanceof SocketConnection socketConnection)) {
+            throw new IllegalStateException("Blocking reads require a socket connection");
         }
-
-        if (!ended) {
-            throw new IOException("Stream ended before END_OF_RESPONSE");
-        }
-
-        String payload = rb.toString();
-        if (payload.isBlank()) {
-            throw new Exception("Empty response");
-        }
-        Log.trace("Received raw request (%d chars)", payload.length());
-        return new RequestParser(payload);
+        RequestParser request = socketConnection.readRequest();
+        Log.trace("Received request (protocol v%d)", connection.getProtocolVersion());
+        return request;
     }
 
     @Override
     public void run() {
         try {
-            Log.info(
-                    "Client connected %s:%d",
-                    clientSocket.getInetAddress().getHostAddress(),
-                    clientSocket.getPort());
+            Log.info("Client connected %s", connection.getRemoteAddress());
             while (true) {
                 RequestParser request = getRequest();
                 Log.debug(
@@ -113,37 +89,63 @@ public class ClientHandler implements Runnable {
                 handleRequest(request);
             }
         } catch (Exception e) {
-            Log.error(
-                    "Client loop error for %s:%d",
-                    e,
-                    clientSocket.getInetAddress().getHostAddress(),
-                    clientSocket.getPort());
+            Log.error("Client loop error for %s", e, connection.getRemoteAddress());
         } finally {
-            try {
-                if (in != null) {
-                    in.close();
-                }
-                if (out != null) {
-                    out.close();
-                }
-                if (clientSocket != null && !clientSocket.isClosed()) {
-                    clientSocket.close();
-                }
-                Log.info(
-                        "Client disconnected %s:%d",
-                        clientSocket.getInetAddress().getHostAddress(),
-                        clientSocket.getPort());
-            } catch (IOException e) {
-                Log.warn(
-                        "Error during client cleanup %s:%d",
-                        e,
-                        clientSocket.getInetAddress().getHostAddress(),
-                        clientSocket.getPort());
-            }
+            disconnect();
         }
     }
 
+    /**
+     * Handle one complete request read by a non-blocking reactor.
+     *
+     * @param request the parsed request
+     */
+    void onRequest(RequestParser request) {
+        Log.debug(
+                "Handling request intent=%s auth=%s",
+                request.getIntent(),
+                request.isAuth());
+        handleRequest(request);
+    }
+
+    /**
+     * Close the connection and unregister this handler, only the first call
+     * has any effect.
+     */
+    void disconnect() {
+        if (!disconnected.compareAndSet(false, true)) {
+            return;
+        }
+        connection.close();
+        connectionManager.removeClient(this);
+        Log.info("Client disconnected %s", connection.getRemoteAddress());
+    }
+
+    User getUser() {
+        return user;
+    }
+
+    ClientConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Handle one request and record its latency and outcome in
+     * {@link Metrics}.
+     */
     void handleRequest(RequestParser request) {
+        long started = System.nanoTime();
+        requestFailed = false;
+        boolean completed = false;
+        try {
+            dispatch(request);
+            completed = true;
+        } finally {
+            Metrics.recordRequest(request.getIntent(), System.nanoTime() - started, requestFailed || !completed);
+        }
+    }
+
+    private void dispatch(RequestParser request) {
         if (!isAuthenticated && !(request.isAuth() || request.isSignup())) {
             sendResponse(ResponseBuilder.forbidden("you should be authenticated first"));
             Log.warn(
@@ -169,23 +171,87 @@ public class ClientHandler implements Runnable {
                 handleGetUsers(request);
             case ADD ->
                 handleAdd(request);
+            case GET_MESSAGES ->
+                handleGetMessages(request);
         }
     }
 
+    /**
+     * Default and maximum number of messages in a GET_MESSAGES page.
+     */
+    static final int DEFAULT_MESSAGES_PAGE = 50;
+    static final int MAX_MESSAGES_PAGE = 200;
+
+    /**
+     * return a page of a group's message history, oldest first, as a JSON array
+     * with resource 'messages'. DATA is an optional query of the form
+     * {@code before=<sequence>&limit=<n>} or {@code after=<sequence>&limit=<n>},
+     * without a cursor the latest messages are returned.
+     *
+     * @param request
+     */
+    void handleGetMessages(RequestParser request) {
+        String groupName = request.getGroup();
+        Group group = DatabaseManager.groupManager.getGroup(groupName);
+        if (group == null) {
+            var err = ResponseBuilder.error("Group not found");
+            sendResponse(err);
+            logResponse(err);
+            return;
+        }
+        if (!group.isMember(this.user)) {
+            var err = ResponseBuilder.forbidden("You are not a member of this group");
+            sendResponse(err);
+            logResponse(err);
+            return;
+        }
+
+        long before = -1;
+        long after = -1;
+        int limit = DEFAULT_MESSAGES_PAGE;
+        String query = request.getData() != null ? request.getData() : "";
+        try {
+            for (String param : query.split("&")) {
+                if (param.isBlank()) {
+                    continue;
+                }
+                int eq = param.indexOf('=');
+                String key = eq < 0 ? param.trim() : param.substring(0, eq).trim();
+                String value = eq < 0 ? "" : param.substring(eq + 1).trim();
+                switch (key) {
+                    case "before" -> before = Long.parseLong(value);
+                    case "after" -> after = Long.parseLong(value);
+                    case "limit" -> limit = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException(key);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            var err = ResponseBuilder.error("Invalid messages query: " + query);
+            sendResponse(err);
+            logResponse(err);
+            return;
+        }
+        limit = Math.max(1, Math.min(limit, MAX_MESSAGES_PAGE));
+
+        // Stored messages are UTF-8 JSON already, they go out without a String copy
+        byte[] json = DatabaseManager.chatMessageManager.getPageJson(group, before, after, limit);
+        var page = ResponseFrame.of(ResponseStatus.OK, ResponseResource.MESSAGES, DataType.JSON, groupName, json);
+        sendFrame(page);
+        logResponse(page);
+    }
+
     /**
      * return all groups that user is member of
      *
      * @param request
      */
     void handleGetGroups(RequestParser request) {
-        var groups = DatabaseManager.groupManager.getUserGruops(user);
-
-        // Serialize full group objects (name, admin, members, messages if present)
-        String dataJson = new GroupSerializer(groups, false).serialize();
+        // Cached UTF-8 group views (name, admin, members), re-encoded only after a change
+        byte[] dataJson = DatabaseManager.groupManager.getUserGroupsJson(user);
 
         // Send as JSON with proper resource tag so subscribers receive it
-        var resp = ResponseBuilder.ok(dataJson, DataType.JSON, null, ResponseResource.GROUPS);
-        sendResponse(resp);
+        var resp = ResponseFrame.of(ResponseStatus.OK, ResponseResource.GROUPS, DataType.JSON, null, dataJson);
+        sendFrame(resp);
         logResponse(resp);
     }
 
@@ -200,18 +266,17 @@ public class ClientHandler implements Runnable {
         var groupName = request.getGroup();
         var group = DatabaseManager.groupManager.getGroup(groupName);
 
-        java.util.List<User> users;
+        // Cached UTF-8 JSON, re-encoded only after a change
+        byte[] data;
         if (group == null) {
-            users = DatabaseManager.userManager.getAllUsers();
+            data = DatabaseManager.userManager.getAllUsersJson();
         } else {
-            users = group.getMembers();
+            data = DatabaseManager.groupManager.getMembersJson(group);
         }
 
-        String data = new UserSerializer(users, false).serialize();
-
         // Mark explicitly as JSON and tag resource
-        var resp = ResponseBuilder.ok(data, DataType.JSON, groupName, ResponseResource.USERS);
-        sendResponse(resp);
+        var resp = ResponseFrame.of(ResponseStatus.OK, ResponseResource.USERS, DataType.JSON, groupName, data);
+        sendFrame(resp);
         logResponse(resp);
     }
 
@@ -269,6 +334,17 @@ public class ClientHandler implements Runnable {
     void handleSignup(RequestParser request) {
         var credentials = request.getCredentials();
         ResponseBuilder response;
+        if (credentials == null) {
+            response = new ResponseBuilder(
+                    "Credentials must be provided",
+                    DataType.TEXT,
+                    null,
+                    ResponseStatus.ERROR,
+                    ResponseResource.AUTH_FAILURE);
+            sendResponse(response);
+            logResponse(response);
+            return;
+        }
         try {
             User createdUser = DatabaseManager.userManager.createUser(
                     credentials.getUsername(),
@@ -307,7 +383,7 @@ public class ClientHandler implements Runnable {
             Log.error(
                     "Signup error for username=%s",
                     e,
-                    credentials.getUsername());
+                    credentials != null ? credentials.getUsername() : "?");
             // Emit AUTH_FAILURE to trigger failure subscribers
             response = new ResponseBuilder(
                     "User already exists",
@@ -350,14 +426,23 @@ public class ClientHandler implements Runnable {
         String content = request.getData();
 
         ChatMessage chatMessage = new ChatMessage(sender, content, group, now);
-        DatabaseManager.chatMessageManager.addMessage(chatMessage);
+        try {
+            DatabaseManager.chatMessageManager.addMessage(chatMessage);
+        } catch (Exception e) {
+            // e.g. the group's message store could not map a new segment
+            Log.error("Failed to store message for group=%s by userId=%s", e, groupName, sender.getId());
+            var err = ResponseBuilder.error("Failed to store message");
+            sendResponse(err);
+            logResponse(err);
+            return;
+        }
 
-        // Serialize as JSON payload
-        com.rasel.server.db.ChatMessageSerializer serializer = new com.rasel.server.db.ChatMessageSerializer();
-        String json = serializer.serialize(chatMessage);
+        // Serialize as UTF-8 JSON, copied as is into every recipient's frame
+        byte[] json = Codecs.encode(ChatMessage.class, chatMessage, Codecs.Format.JSON);
 
-        var response = ResponseBuilder
-                .ok(json, com.rasel.common.DataType.JSON, groupName, ResponseResource.MESSAGES);
+        // Encoded once and shared by every recipient
+        ResponseFrame frame = ResponseFrame.of(
+                ResponseStatus.OK, ResponseResource.MESSAGES, DataType.JSON, groupName, json);
 
         // Broadcast to all group members except the sender (client already displays own
         // message optimistically)
@@ -368,17 +453,17 @@ public class ClientHandler implements Runnable {
             }
             ClientHandler client = connectionManager.getClientHandlerByUserId(member.getId());
             if (client != null) {
-                client.sendResponse(response);
+                client.sendFrame(frame);
                 delivered++;
             }
         }
-        Log.info(
-                "Message delivered user=%s group=%s size=%d delivered=%d/%d",
-                this.user != null ? this.user.getUsername() : "?",
-                groupName,
-                content != null ? content.length() : 0,
-                delivered,
-                group.getMembers().size());
+        Metrics.recordFanOut(delivered);
+        Log.event(Log.Level.INFO, "Message delivered",
+                "user", this.user != null ? this.user.getUsername() : "?",
+                "group", groupName,
+                "size", content != null ? content.length() : 0,
+                "delivered", delivered,
+                "members", group.getMembers().size());
     }
 
     /**
@@ -388,6 +473,12 @@ public class ClientHandler implements Runnable {
      */
     void handleCreate(RequestParser request) {
         String groupIdentifier = request.getGroup();
+        if (groupIdentifier != null && Protocol.utf8(groupIdentifier).length > Protocol.MAX_NAME_BYTES) {
+            var resp = ResponseBuilder.error("Group name is limited to 65535 bytes");
+            sendResponse(resp);
+            logResponse(resp);
+            return;
+        }
         Group group = DatabaseManager.groupManager.getGroup(groupIdentifier);
         if (group != null) {
             Log.warn(
@@ -400,7 +491,7 @@ public class ClientHandler implements Runnable {
             return;
         }
         try {
-            DatabaseManager.groupManager.createGroup(
+            Group created = DatabaseManager.groupManager.createGroup(
                     groupIdentifier,
                     this.user);
             Log.info(
@@ -412,18 +503,9 @@ public class ClientHandler implements Runnable {
             sendResponse(resp);
             logResponse(resp);
 
-            // 2) Immediately send updated GROUPS as JSON so GUI clients refresh reliably
-            var groups = DatabaseManager.groupManager.getUserGruops(this.user);
-            String dataJson = new com.rasel.server.db.GroupSerializer(groups, false).serialize();
-            Log.info("Post-create GROUPS for user=%s count=%d jsonLen=%d",
-                    this.user != null ? this.user.getUsername() : "?",
-                    groups != null ? groups.size() : 0,
-                    dataJson != null ? dataJson.length() : 0);
-            var groupsResp = ResponseBuilder.ok(dataJson, com.rasel.common.DataType.JSON, null,
-                    com.rasel.common.ResponseResource.GROUPS);
-            sendResponse(groupsResp);
-            logResponse(groupsResp);
-            Log.info("Sent post-create GROUPS response to user=%s", this.user != null ? this.user.getUsername() : "?");
+            // 2) Push the new group as a delta, clients merge it into their cached list
+            sendFrame(GroupDeltas.groupAdded(created));
+            Log.info("Sent post-create GROUP_DELTA to user=%s", this.user != null ? this.user.getUsername() : "?");
         } catch (Exception e) {
             Log.error(
                     "Failed to create group name=%s by userId=%s",
@@ -496,7 +578,7 @@ public class ClientHandler implements Runnable {
             return;
         }
         try {
-            DatabaseManager.groupManager.addMember(groupName, target);
+            long version = DatabaseManager.groupManager.addMember(groupName, target);
             Log.info(
                     "User added to group group=%s by admin=%s user=%s",
                     groupName,
@@ -506,26 +588,26 @@ public class ClientHandler implements Runnable {
             sendResponse(resp);
             logResponse(resp);
 
-            // Push updated GROUPS to target user (now a member) and to admin (sender)
+            // Push deltas: the group to the target (now a member), the new
+            // member to everyone else online in the group, the admin included
             try {
-                var groupsForTarget = DatabaseManager.groupManager.getUserGruops(target);
-                String dataJsonTarget = new com.rasel.server.db.GroupSerializer(groupsForTarget, false).serialize();
-                var targetGroupsResp = ResponseBuilder.ok(dataJsonTarget, com.rasel.common.DataType.JSON, null,
-                        com.rasel.common.ResponseResource.GROUPS);
                 ClientHandler targetHandler = connectionManager.getClientHandlerByUserId(target.getId());
                 if (targetHandler != null) {
-                    targetHandler.sendResponse(targetGroupsResp);
-                    targetHandler.logResponse(targetGroupsResp);
+                    targetHandler.sendFrame(GroupDeltas.groupAdded(group));
+                }
+                ResponseFrame joined = GroupDeltas.change(
+                        GroupDeltaPayload.Op.MEMBER_JOINED, group, version, target);
+                for (User member : group.getMembers()) {
+                    if (member.equals(target)) {
+                        continue;
+                    }
+                    ClientHandler handler = connectionManager.getClientHandlerByUserId(member.getId());
+                    if (handler != null) {
+                        handler.sendFrame(joined);
+                    }
                 }
-
-                var groupsForAdmin = DatabaseManager.groupManager.getUserGruops(this.user);
-                String dataJsonAdmin = new com.rasel.server.db.GroupSerializer(groupsForAdmin, false).serialize();
-                var adminGroupsResp = ResponseBuilder.ok(dataJsonAdmin, com.rasel.common.DataType.JSON, null,
-                        com.rasel.common.ResponseResource.GROUPS);
-                sendResponse(adminGroupsResp);
-                logResponse(adminGroupsResp);
             } catch (Exception pushEx) {
-                Log.warn("Failed to push updated GROUPS after add: %s", pushEx.getMessage());
+                Log.warn("Failed to push GROUP_DELTA after add: %s", pushEx.getMessage());
             }
         } catch (Exception e) {
             Log.error(
@@ -544,15 +626,19 @@ public class ClientHandler implements Runnable {
             Log.error("Attempted to send null response");
             return;
         }
-        String payload = response.getResponseString();
-        if (payload == null || payload.isBlank()) {
-            Log.error("Attempted to send empty response");
-            return;
+        if (response.getStatus() != ResponseStatus.OK) {
+            requestFailed = true;
         }
-        out.println(payload);
-        out.flush();
-        Log.trace("Sent response (%d chars)", payload.length());
+        sendFrame(response.toFrame());
+    }
 
+    /**
+     * Send an already built frame, the same frame can be passed to many
+     * handlers and is only encoded once per protocol version.
+     */
+    void sendFrame(ResponseFrame frame) {
+        connection.send(frame);
+        Log.trace("Sent response status=%s resource=%s", frame.getStatus(), frame.getResource());
     }
 
     void logResponse(Response response) {
@@ -561,4 +647,11 @@ public class ClientHandler implements Runnable {
                 response.getStatus().name(),
                 response.getGroup());
     }
+
+    void logResponse(ResponseFrame frame) {
+        Log.debug(
+                "Response status=%s group=%s",
+                frame.getStatus().name(),
+                frame.getGroup());
+    }
 }
@@ -1,10 +1,22 @@
 package com.rasel.server;
 
 import java.net.ServerSocket;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.rasel.server.db.User;
+import com.rasel.server.logging.Log;
+import com.rasel.server.metrics.Metrics;
 
 /**
  * TODO: add detailed documentation to this interface
@@ -13,6 +25,8 @@ import java.util.concurrent.ConcurrentHashMap;
 interface ClientsManager {
     void addClient(ClientHandler client);
 
+    void registerClient(ClientHandler client);
+
     void removeClient(ClientHandler client);
 
     List<ClientHandler> getClients();
@@ -27,28 +41,110 @@ interface ClientsManager {
 /**
  * Manage connected clients, thread creation, and authenticatred clients.
  * ConnectionManager
+ *
+ * Blocking handlers are run on an executor owned by this manager, either one
+ * platform thread or one virtual thread per client depending on the
+ * {@link ExecutionMode}, optionally capped to a maximum number of concurrently
+ * running handlers.
  */
-public class ConnectionManager implements ClientsManager {
+public final class ConnectionManager implements ClientsManager {
 
     ServerSocket serverSocket;
-    private final List<ClientHandler> clients = new ArrayList<>();
+    // handlers are added/removed from acceptor, handler and reactor threads
+    private final Set<ClientHandler> clients = ConcurrentHashMap.newKeySet();
     private final Map<String, ClientHandler> authenticatedClients = new ConcurrentHashMap<>();
 
+    private final ExecutionMode executionMode;
+    private final ExecutorService executor;
+    private final int maxHandlers;
+    // null when the number of handlers is unbounded
+    private final Semaphore handlerSlots;
+
+    private final BackpressureSettings backpressureSettings;
+
     public ConnectionManager(ServerSocket serverSocket) {
+        this(serverSocket, ExecutionMode.PLATFORM, 0, BackpressureSettings.DEFAULT);
+    }
+
+    /**
+     * @param serverSocket  listening socket
+     * @param executionMode thread type used for blocking handlers
+     * @param maxHandlers   maximum concurrently running handlers, 0 or less
+     *                      for no limit
+     * @param backpressure  outbound queue limits for every client
+     */
+    public ConnectionManager(
+            ServerSocket serverSocket,
+            ExecutionMode executionMode,
+            int maxHandlers,
+            BackpressureSettings backpressure) {
         this.serverSocket = serverSocket;
+        this.backpressureSettings = backpressure;
+        this.executionMode = executionMode;
+        this.maxHandlers = maxHandlers;
+        this.handlerSlots = maxHandlers > 0 ? new Semaphore(maxHandlers) : null;
+        ThreadFactory factory = switch (executionMode) {
+            case PLATFORM ->
+                Thread.ofPlatform().name("client-handler-", 0).factory();
+            case VIRTUAL ->
+                Thread.ofVirtual().name("client-handler-vt-", 0).factory();
+        };
+        this.executor = Executors.newThreadPerTaskExecutor(factory);
+        Metrics.gauge("clientsConnected", clients::size);
+        Metrics.gauge("clientsAuthenticated", authenticatedClients::size);
+        Metrics.gauge("outboundQueuedBytes", this::getQueuedBytes);
+        Metrics.gauge("outboundDroppedFrames", this::getDroppedFrames);
     }
 
+    /**
+     * Start the handler on the executor. When the handler cap is reached this
+     * blocks the caller (the acceptor) until a running handler finishes, so
+     * extra connections wait in the socket backlog.
+     */
     public void addClient(ClientHandler client) {
+        if (handlerSlots != null && !handlerSlots.tryAcquire()) {
+            Log.warn("Handler limit reached (%d), waiting for a free slot", maxHandlers);
+            handlerSlots.acquireUninterruptibly();
+        }
+        clients.add(client);
+        try {
+            executor.execute(() -> {
+                try {
+                    client.run();
+                } finally {
+                    if (handlerSlots != null) {
+                        handlerSlots.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // manager is shutting down
+            if (handlerSlots != null) {
+                handlerSlots.release();
+            }
+            client.disconnect();
+        }
+    }
+
+    /**
+     * Track a client whose IO is driven elsewhere (e.g. by a {@link NioReactor}),
+     * no thread is started for it.
+     */
+    public void registerClient(ClientHandler client) {
         clients.add(client);
-        new Thread(client).start();
     }
 
     public void removeClient(ClientHandler client) {
         clients.remove(client);
+        User user = client.getUser();
+        if (user != null) {
+            // only drop the mapping if it still points at this session
+            authenticatedClients.remove(user.getId(), client);
+        }
     }
 
     public List<ClientHandler> getClients() {
-        return clients;
+        return new ArrayList<>(clients);
     }
 
     public void addAuthenticatedClient(String userId, ClientHandler client) {
@@ -62,4 +158,56 @@ public class ConnectionManager implements ClientsManager {
     public ClientHandler getClientHandlerByUserId(String userId) {
         return authenticatedClients.get(userId);
     }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public BackpressureSettings getBackpressureSettings() {
+        return backpressureSettings;
+    }
+
+    /**
+     * @return bytes queued for all connected clients but not written yet
+     */
+    public long getQueuedBytes() {
+        long total = 0;
+        for (ClientHandler client : clients) {
+            total += client.getConnection().getQueuedBytes();
+        }
+        return total;
+    }
+
+    /**
+     * @return frames dropped for slow clients that are still connected
+     */
+    public long getDroppedFrames() {
+        long total = 0;
+        for (ClientHandler client : clients) {
+            total += client.getConnection().getDroppedFrames();
+        }
+        return total;
+    }
+
+    /**
+     * Stop accepting handlers, disconnect every client and wait for running
+     * handlers to finish.
+     *
+     * @param timeout maximum time to wait for handlers
+     */
+    public void shutdown(Duration timeout) {
+        executor.shutdown();
+        for (ClientHandler client : getClients()) {
+            client.disconnect();
+        }
+        try {
+            if (!executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                Log.warn("Client handlers did not stop within %d ms, interrupting", timeout.toMillis());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
 }
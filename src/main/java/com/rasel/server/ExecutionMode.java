@@ -0,0 +1,11 @@
+package com.rasel.server;
+
+/**
+ * How {@link ConnectionManager} runs blocking {@link ClientHandler}s.
+ */
+public enum ExecutionMode {
+    /** one platform thread per connected client (default) */
+    PLATFORM,
+    /** one virtual thread per connected client */
+    VIRTUAL,
+}
@@ -0,0 +1,65 @@
+package com.rasel.server;
+
+import java.nio.charset.StandardCharsets;
+
+import com.rasel.common.DataType;
+import com.rasel.common.GroupDeltaPayload;
+import com.rasel.common.ResponseFrame;
+import com.rasel.common.ResponseResource;
+import com.rasel.common.ResponseStatus;
+import com.rasel.server.db.DatabaseManager;
+import com.rasel.server.db.Group;
+import com.rasel.server.db.JsonSupport;
+import com.rasel.server.db.User;
+
+/**
+ * Builds GROUP_DELTA frames, the JSON of a {@link GroupDeltaPayload}.
+ *
+ * A delta describes one change of a group, so pushing it after a mutation
+ * costs tens of bytes instead of re-sending the recipient's whole group list.
+ * Frames don't depend on the recipient and can be shared by all of them.
+ */
+final class GroupDeltas {
+
+    private GroupDeltas() {
+    }
+
+    /**
+     * The recipient became a member of {@code group}, the delta carries the
+     * group's cached view.
+     */
+    static ResponseFrame groupAdded(Group group) {
+        long version = group.getVersion();
+        // the generator only takes raw JSON as text, a single group view is small
+        String view = new String(DatabaseManager.groupManager.getGroupJson(group), StandardCharsets.UTF_8);
+        return frame(GroupDeltaPayload.Op.GROUP_ADDED, group, version, null, view);
+    }
+
+    /**
+     * A change of {@code user} within {@code group}, as returned by the
+     * {@link com.rasel.server.db.GroupManager} mutation.
+     */
+    static ResponseFrame change(GroupDeltaPayload.Op op, Group group, long version, User user) {
+        return frame(op, group, version, user, null);
+    }
+
+    private static ResponseFrame frame(GroupDeltaPayload.Op op, Group group, long version, User user,
+            String view) {
+        byte[] json = JsonSupport.write(out -> {
+            out.writeStartObject();
+            out.writeStringField("op", op.name());
+            out.writeStringField("group", group.getName());
+            out.writeNumberField("version", version);
+            if (user != null) {
+                out.writeStringField("user", user.getUsername());
+            }
+            if (view != null) {
+                out.writeFieldName("view");
+                out.writeRawValue(view);
+            }
+            out.writeEndObject();
+        }, false);
+        return ResponseFrame.of(ResponseStatus.OK, ResponseResource.GROUP_DELTA, DataType.JSON, group.getName(),
+                json);
+    }
+}
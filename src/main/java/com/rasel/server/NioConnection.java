@@ -0,0 +1,347 @@
+package com.rasel.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.rasel.common.Protocol;
+import com.rasel.common.RequestParser;
+import com.rasel.common.ResponseFrame;
+import com.rasel.server.logging.Log;
+import com.rasel.server.metrics.Metrics;
+
+/**
+ * Non-blocking {@link ClientConnection} owned by a single {@link NioReactor}.
+ *
+ * Inbound bytes are accumulated until a complete frame is available, an
+ * END_OF_REQUEST line for text frames or header plus declared body length for
+ * binary ones, and the parsed request is handed to the {@link ClientHandler}
+ * on the reactor thread. The
+ * inbound buffer is released between frames so idle connections only cost
+ * the channel, the key and this object.
+ *
+ * Outbound frames may be queued from any thread (e.g. a broadcast running on
+ * another reactor) into a bounded {@link OutboundQueue}, they are written by
+ * the owning reactor.
+ */
+final class NioConnection implements ClientConnection {
+
+    private static final byte[] END_OF_REQUEST = Protocol.END_OF_REQUEST.getBytes(StandardCharsets.US_ASCII);
+
+    private static final int INITIAL_INBOUND_SIZE = 512;
+
+    private final SocketChannel channel;
+
+    private final SelectionKey key;
+
+    private final NioReactor reactor;
+
+    private final String remoteAddress;
+
+    private final OutboundQueue outbound;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private volatile boolean closed = false;
+
+    private volatile int protocolVersion = Protocol.TEXT_VERSION;
+
+    private ClientHandler handler;
+
+    // partial inbound frame, null while the connection is idle between frames
+    private byte[] inbound;
+
+    private int inboundLength;
+
+    // next byte to scan for '\n', and start of the line being scanned
+    private int scanOffset;
+
+    private int lineStart;
+
+    NioConnection(SocketChannel channel, SelectionKey key, NioReactor reactor, BackpressureSettings backpressure) {
+        this.channel = channel;
+        this.key = key;
+        this.reactor = reactor;
+        this.outbound = new OutboundQueue(backpressure);
+        this.remoteAddress = describe(channel);
+    }
+
+    void setHandler(ClientHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Read whatever is available into the reactor's shared buffer and
+     * dispatch every complete frame. Runs on the reactor thread.
+     */
+    void onReadable(ByteBuffer readBuffer) {
+        int read;
+        readBuffer.clear();
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            Log.debug("Read failed for client %s: %s", remoteAddress, e.getMessage());
+            handler.disconnect();
+            return;
+        }
+        if (read < 0) {
+            handler.disconnect();
+            return;
+        }
+        if (read == 0) {
+            return;
+        }
+        readBuffer.flip();
+        append(readBuffer);
+        processFrames();
+    }
+
+    /**
+     * Channel became writable again after a partial write.
+     */
+    void onWritable() {
+        flush();
+    }
+
+    private void append(ByteBuffer src) {
+        int n = src.remaining();
+        if (inbound == null) {
+            inbound = new byte[Math.max(INITIAL_INBOUND_SIZE, n)];
+        } else if (inboundLength + n > inbound.length) {
+            inbound = Arrays.copyOf(inbound, Math.max(inbound.length * 2, inboundLength + n));
+        }
+        src.get(inbound, inboundLength, n);
+        inboundLength += n;
+    }
+
+    private void processFrames() {
+        while (inboundLength > 0 && !closed) {
+            boolean dispatched = inbound[0] == Protocol.MAGIC ? processBinaryFrame() : processTextFrame();
+            if (!dispatched) {
+                break;
+            }
+        }
+
+        if (!closed && inboundLength > Protocol.HEADER_SIZE + Protocol.MAX_FRAME_BYTES) {
+            Log.error("Client loop error for %s", new Exception("Request too large"), remoteAddress);
+            handler.disconnect();
+        }
+    }
+
+    /**
+     * @return true if a complete binary frame was dispatched
+     */
+    private boolean processBinaryFrame() {
+        if (inboundLength < Protocol.HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.wrap(inbound, 0, Protocol.HEADER_SIZE);
+        RequestParser request;
+        try {
+            int frameLength = Protocol.HEADER_SIZE + Protocol.bodyLength(header);
+            if (inboundLength < frameLength) {
+                return false;
+            }
+            ByteBuffer body = ByteBuffer.wrap(inbound, Protocol.HEADER_SIZE, frameLength - Protocol.HEADER_SIZE).slice();
+            long started = System.nanoTime();
+            request = Protocol.decodeRequest(header, body);
+            Metrics.recordParse(System.nanoTime() - started);
+            consume(frameLength);
+        } catch (Exception e) {
+            Log.error("Client loop error for %s", e, remoteAddress);
+            handler.disconnect();
+            return false;
+        }
+        protocolVersion = Protocol.BINARY_VERSION;
+        return dispatch(request);
+    }
+
+    /**
+     * @return true if a complete text frame was dispatched
+     */
+    private boolean processTextFrame() {
+        while (scanOffset < inboundLength) {
+            if (inbound[scanOffset++] != '\n') {
+                continue;
+            }
+            int lineEnd = scanOffset - 1;
+            if (lineEnd > lineStart && inbound[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (!isTerminator(lineStart, lineEnd)) {
+                lineStart = scanOffset;
+                continue;
+            }
+
+            long started = System.nanoTime();
+            String payload = new String(inbound, 0, lineStart, StandardCharsets.UTF_8);
+            consume(scanOffset);
+            if (payload.indexOf('\r') >= 0) {
+                payload = payload.replace("\r\n", "\n");
+            }
+            RequestParser request;
+            try {
+                if (payload.isBlank()) {
+                    throw new Exception("Empty request");
+                }
+                request = new RequestParser(payload);
+                Metrics.recordParse(System.nanoTime() - started);
+            } catch (Exception e) {
+                Log.error("Client loop error for %s", e, remoteAddress);
+                handler.disconnect();
+                return false;
+            }
+            protocolVersion = Protocol.TEXT_VERSION;
+            return dispatch(request);
+        }
+        return false;
+    }
+
+    /**
+     * Hand a request to the handler, a failing handler only costs this
+     * connection, never the reactor and its other connections.
+     *
+     * @return false if the request failed and the connection was closed
+     */
+    private boolean dispatch(RequestParser request) {
+        try {
+            handler.onRequest(request);
+            return true;
+        } catch (RuntimeException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    /**
+     * Log an unexpected error and close this connection. Runs on the reactor
+     * thread.
+     */
+    void fail(RuntimeException e) {
+        Log.error("Client loop error for %s", e, remoteAddress);
+        handler.disconnect();
+    }
+
+    private boolean isTerminator(int from, int to) {
+        return Arrays.equals(inbound, from, to, END_OF_REQUEST, 0, END_OF_REQUEST.length);
+    }
+
+    private void consume(int count) {
+        int remaining = inboundLength - count;
+        if (remaining == 0) {
+            inbound = null;
+        } else {
+            System.arraycopy(inbound, count, inbound, 0, remaining);
+        }
+        inboundLength = remaining;
+        scanOffset = 0;
+        lineStart = 0;
+    }
+
+    @Override
+    public void send(ResponseFrame frame) {
+        if (closed) {
+            return;
+        }
+        switch (outbound.offer(frame.buffer(protocolVersion))) {
+            case QUEUED -> {
+                if (flushScheduled.compareAndSet(false, true)) {
+                    reactor.execute(this::flush);
+                }
+            }
+            case DROPPED ->
+                Log.debug("Dropped frame for slow client %s (%d bytes queued)",
+                        remoteAddress, outbound.getQueuedBytes());
+            case OVERFLOW -> {
+                Log.warn("Disconnecting slow client %s (%d bytes queued)",
+                        remoteAddress, outbound.getQueuedBytes());
+                reactor.execute(handler::disconnect);
+            }
+        }
+    }
+
+    /**
+     * Write as much of the outbound queue as the socket accepts, several
+     * frames per gathering write, and keep OP_WRITE registered only while
+     * something is left. Runs on the reactor thread.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        if (closed || !key.isValid()) {
+            return;
+        }
+        ByteBuffer[] batch = reactor.writeBatch();
+        try {
+            int count;
+            while ((count = outbound.peek(batch)) > 0) {
+                channel.write(batch, 0, count);
+                Metrics.recordOutboundWrite();
+                int written = 0;
+                while (written < count && !batch[written].hasRemaining()) {
+                    written++;
+                }
+                outbound.complete(written);
+                if (written < count) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            Log.debug("Write failed for client %s: %s", remoteAddress, e.getMessage());
+            handler.disconnect();
+        } finally {
+            Arrays.fill(batch, null);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        outbound.close();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.warn("Error during client cleanup %s", e, remoteAddress);
+        }
+    }
+
+    @Override
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        return outbound.getQueuedBytes();
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return outbound.getDroppedFrames();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    private static String describe(SocketChannel channel) {
+        try {
+            if (channel.getRemoteAddress() instanceof InetSocketAddress address) {
+                return address.getAddress().getHostAddress() + ":" + address.getPort();
+            }
+        } catch (IOException ignored) {
+        }
+        return "?";
+    }
+}
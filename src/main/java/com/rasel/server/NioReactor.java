@@ -0,0 +1,156 @@
+package com.rasel.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.rasel.server.logging.Log;
+
+/**
+ * A single selector thread serving many {@link NioConnection}s.
+ *
+ * All channel IO and request handling for a connection happens on the
+ * reactor that owns it, other threads only hand work over through
+ * {@link #execute(Runnable)}.
+ */
+final class NioReactor implements Runnable {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final int WRITE_BATCH_FRAMES = 64;
+
+    private final Selector selector;
+
+    private final ConnectionManager connectionManager;
+
+    private final Thread thread;
+
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+
+    // coalesces wakeups when many threads queue work at once (e.g. broadcasts)
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+
+    // shared by every connection on this reactor, only the bytes of an
+    // incomplete frame are copied out into the connection itself
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    // shared the same way, frames handed to one gathering write
+    private final ByteBuffer[] writeBatch = new ByteBuffer[WRITE_BATCH_FRAMES];
+
+    NioReactor(String name, ConnectionManager connectionManager) throws IOException {
+        this.selector = Selector.open();
+        this.connectionManager = connectionManager;
+        this.thread = new Thread(this, name);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * @return scratch array for a connection's gathering write, only to be
+     *         used on the reactor thread and cleared afterwards
+     */
+    ByteBuffer[] writeBatch() {
+        return writeBatch;
+    }
+
+    /**
+     * Hand an accepted channel over to this reactor.
+     */
+    void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                NioConnection connection = new NioConnection(
+                        channel, key, this, connectionManager.getBackpressureSettings());
+                ClientHandler handler = new ClientHandler(connection, null, connectionManager);
+                connection.setHandler(handler);
+                key.attach(connection);
+                connectionManager.registerClient(handler);
+                Log.info("Client connected %s", connection.getRemoteAddress());
+            } catch (IOException e) {
+                Log.error("Failed to register client channel", e);
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        });
+    }
+
+    /**
+     * Run a task on the reactor thread.
+     */
+    void execute(Runnable task) {
+        pendingTasks.add(task);
+        if (Thread.currentThread() != thread && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    void shutdown() {
+        thread.interrupt();
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        Log.info("Reactor %s started", thread.getName());
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select();
+                wakeupPending.set(false);
+                runPendingTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (connection == null || !key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        if (key.isReadable()) {
+                            connection.onReadable(readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (RuntimeException e) {
+                        connection.fail(e);
+                    }
+                }
+                // flushes queued while handling reads on this thread
+                runPendingTasks();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            Log.error("Reactor %s stopped", e, thread.getName());
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.error("Reactor task failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.rasel.server;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.rasel.server.logging.Log;
+
+/**
+ * Non-blocking alternative to {@link Server}.
+ *
+ * Acceptor threads hand accepted channels round-robin to a small, fixed
+ * pool of {@link NioReactor}s, each multiplexing its connections on a single
+ * {@link java.nio.channels.Selector}. Request handling reuses
+ * {@link ClientHandler}, so both servers speak the same protocol, but no
+ * thread is dedicated to an idle connection.
+ */
+public class NioServer {
+
+    final ServerConfig config;
+    // The first listener, every acceptor's own with SO_REUSEPORT
+    ServerSocketChannel serverChannel;
+    private final ServerSocketChannel[] listeners;
+    ConnectionManager connectionManager;
+    private NioReactor[] reactors;
+    private final AtomicInteger nextReactor = new AtomicInteger();
+
+    public NioServer() throws IOException {
+        this(Runtime.getRuntime().availableProcessors(), BackpressureSettings.DEFAULT);
+    }
+
+    /**
+     * @param reactorCount number of selector threads
+     * @param backpressure outbound queue limits for every client
+     */
+    public NioServer(int reactorCount, BackpressureSettings backpressure) throws IOException {
+        this(ServerConfig.builder()
+                .io(ServerConfig.Io.NIO)
+                .reactors(reactorCount)
+                .backpressure(backpressure)
+                .build());
+    }
+
+    /**
+     * Bind the listener(s) and start the reactors described by
+     * {@code config}, connections are accepted once
+     * {@link #acceptConnections()} is called.
+     *
+     * @throws IOException if the port can't be bound
+     */
+    public NioServer(ServerConfig config) throws IOException {
+        this.config = config;
+        this.listeners = new ServerSocketChannel[config.listenerCount()];
+        try {
+            listeners[0] = config.listenChannel(config.getPort());
+            int port = listeners[0].socket().getLocalPort();
+            for (int i = 1; i < listeners.length; i++) {
+                listeners[i] = config.listenChannel(port);
+            }
+        } catch (IOException e) {
+            closeListeners();
+            throw e;
+        }
+        serverChannel = listeners[0];
+        connectionManager = new ConnectionManager(
+            serverChannel.socket(),
+            ExecutionMode.PLATFORM,
+            0,
+            config.getBackpressure()
+        );
+
+        reactors = new NioReactor[config.getReactors()];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new NioReactor("reactor-" + i, connectionManager);
+            reactors[i].start();
+        }
+        System.out.println(
+            "✅ Server is up and running on port " + serverChannel.socket().getLocalPort() +
+                " (nio, " + reactors.length + " reactors, " +
+                config.getAcceptors() + " acceptor" + (config.getAcceptors() == 1 ? "" : "s") + ")"
+        );
+    }
+
+    /**
+     * @return the port the server listens on, the bound one when configured
+     *         with port 0
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Accept connections until {@link #shutdown()}. The calling thread is the
+     * first acceptor, the other configured acceptors get their own threads.
+     */
+    public void acceptConnections() {
+        for (int i = 1; i < config.getAcceptors(); i++) {
+            ServerSocketChannel listener = listeners[i % listeners.length];
+            Thread.ofPlatform().name("acceptor-" + i).start(() -> accept(listener));
+        }
+        accept(listeners[0]);
+    }
+
+    private void accept(ServerSocketChannel listener) {
+        try {
+            while (true) {
+                SocketChannel channel = listener.accept();
+                try {
+                    config.configure(channel);
+                } catch (IOException e) {
+                    Log.warn("Failed to set socket options: %s", e.getMessage());
+                }
+                int reactor = Math.floorMod(nextReactor.getAndIncrement(), reactors.length);
+                reactors[reactor].register(channel);
+            }
+        } catch (IOException e) {
+            if (listener.isOpen()) {
+                System.err.println("🔥 Server error: " + e.getMessage());
+            }
+            if (listener == listeners[0]) {
+                System.out.println("🛑 Server is shutting down.");
+            }
+        }
+    }
+
+    /**
+     * Close the listening channels, disconnect clients and stop the reactors.
+     */
+    public void shutdown() {
+        closeListeners();
+        connectionManager.shutdown(Server.SHUTDOWN_TIMEOUT);
+        for (NioReactor reactor : reactors) {
+            reactor.shutdown();
+        }
+    }
+
+    private void closeListeners() {
+        for (ServerSocketChannel listener : listeners) {
+            if (listener == null) {
+                continue;
+            }
+            try {
+                listener.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
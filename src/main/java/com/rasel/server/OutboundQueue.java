@@ -0,0 +1,172 @@
+package com.rasel.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.rasel.server.metrics.Metrics;
+
+/**
+ * Bounded, byte-accounted queue of encoded frames waiting to be written to one
+ * client.
+ *
+ * Any thread may {@link #offer(ByteBuffer)} frames, a single writer (the
+ * connection's writer thread or its reactor) takes a batch from the head with
+ * {@link #peek(ByteBuffer[])} or {@link #awaitBatch(ByteBuffer[])} and calls
+ * {@link #complete(int)} once those frames have been fully written, so bytes
+ * stuck in a blocked write still count against the watermarks. A frame is
+ * always accepted into an empty queue, however large.
+ */
+final class OutboundQueue {
+
+    enum Offer {
+        QUEUED,
+        /** rejected, the queue is saturated and the policy is DROP */
+        DROPPED,
+        /** rejected, the queue is saturated and the policy is DISCONNECT */
+        OVERFLOW,
+    }
+
+    private final BackpressureSettings settings;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private final ArrayDeque<ByteBuffer> frames = new ArrayDeque<>(4);
+
+    private volatile long queuedBytes = 0;
+
+    private volatile long droppedFrames = 0;
+
+    // set above the high watermark, cleared below the low watermark
+    private boolean saturated = false;
+
+    private boolean closed = false;
+
+    OutboundQueue(BackpressureSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * @param frame encoded frame positioned at 0, owned by the queue from now on
+     */
+    Offer offer(ByteBuffer frame) {
+        int size = frame.limit();
+        lock.lock();
+        try {
+            if (closed) {
+                return Offer.DROPPED;
+            }
+            if (saturated || (queuedBytes > 0 && queuedBytes + size > settings.highWatermark())) {
+                if (settings.policy() == SlowConsumerPolicy.DISCONNECT) {
+                    return Offer.OVERFLOW;
+                }
+                saturated = true;
+                droppedFrames++;
+                return Offer.DROPPED;
+            }
+            frames.addLast(frame);
+            queuedBytes += size;
+            notEmpty.signal();
+            return Offer.QUEUED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copy the frames at the head of the queue, without removing them.
+     *
+     * @param batch filled from index 0
+     * @return the number of frames copied, 0 if empty
+     */
+    int peek(ByteBuffer[] batch) {
+        lock.lock();
+        try {
+            return copyHead(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Block until a frame is available, then {@link #peek(ByteBuffer[])}.
+     *
+     * @return the number of frames copied, 0 once closed
+     */
+    int awaitBatch(ByteBuffer[] batch) throws InterruptedException {
+        lock.lock();
+        try {
+            while (frames.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            return closed ? 0 : copyHead(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int copyHead(ByteBuffer[] batch) {
+        int count = 0;
+        for (ByteBuffer frame : frames) {
+            if (count == batch.length) {
+                break;
+            }
+            batch[count++] = frame;
+        }
+        return count;
+    }
+
+    /**
+     * Remove {@code count} head frames after they have been fully written.
+     */
+    void complete(int count) {
+        long size = 0;
+        int removed = 0;
+        lock.lock();
+        try {
+            for (; removed < count; removed++) {
+                ByteBuffer frame = frames.pollFirst();
+                if (frame == null) {
+                    break;
+                }
+                size += frame.limit();
+            }
+            if (removed == 0) {
+                return;
+            }
+            queuedBytes -= size;
+            if (saturated && queuedBytes <= settings.lowWatermark()) {
+                saturated = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        Metrics.recordOutbound(size, removed);
+    }
+
+    /**
+     * Discard queued frames and wake up a waiting writer.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            frames.clear();
+            queuedBytes = 0;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    long getDroppedFrames() {
+        return droppedFrames;
+    }
+}
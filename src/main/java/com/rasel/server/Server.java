@@ -1,22 +1,10 @@
 package com.rasel.server;
 
-import com.rasel.common.RequestParser;
-import com.rasel.common.ResponseBuilder;
-import com.rasel.common.ResponseStatus;
-import com.rasel.server.db.DatabaseManager;
-import com.rasel.server.db.DatabaseManager;
-import com.rasel.server.db.Group;
-import com.rasel.server.db.User;
-import java.io.BufferedReader;
+import com.rasel.server.logging.Log;
 import java.io.IOException;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.Socket;
-import java.util.ArrayList;
+import java.time.Duration;
 
 /**
  * TODO: explain Server class
@@ -30,29 +18,94 @@ import java.util.ArrayList;
  */
 public class Server {
 
-    // TODO: allow port to be assigned per object.
-    final int PORT = 12345;
+    static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+    final ServerConfig config;
+    // The first listener, every acceptor's own with SO_REUSEPORT
     ServerSocket socket;
+    private final ServerSocket[] listeners;
     ConnectionManager connectionManager;
 
-    public Server() {
+    public Server() throws IOException {
+        this(ExecutionMode.PLATFORM, 0, BackpressureSettings.DEFAULT);
+    }
+
+    /**
+     * @param executionMode thread type used for client handlers
+     * @param maxHandlers   maximum concurrently connected clients, 0 or less
+     *                      for no limit
+     * @param backpressure  outbound queue limits for every client
+     */
+    public Server(ExecutionMode executionMode, int maxHandlers, BackpressureSettings backpressure)
+            throws IOException {
+        this(ServerConfig.builder()
+                .executionMode(executionMode)
+                .maxHandlers(maxHandlers)
+                .backpressure(backpressure)
+                .build());
+    }
+
+    /**
+     * Bind the listener(s) described by {@code config}, connections are
+     * accepted once {@link #acceptConnections()} is called.
+     *
+     * @throws IOException if the port can't be bound
+     */
+    public Server(ServerConfig config) throws IOException {
+        this.config = config;
+        this.listeners = new ServerSocket[config.listenerCount()];
         try {
-            socket = new ServerSocket(PORT);
-            connectionManager = new ConnectionManager(socket);
-            System.out.println("✅ Server is up and running on port " + PORT);
+            listeners[0] = config.listen(config.getPort());
+            // With port 0 the other listeners share the port the first one got
+            for (int i = 1; i < listeners.length; i++) {
+                listeners[i] = config.listen(listeners[0].getLocalPort());
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            closeListeners();
+            throw e;
         }
+        socket = listeners[0];
+        connectionManager = new ConnectionManager(
+            socket,
+            config.getExecutionMode(),
+            config.getMaxHandlers(),
+            config.getBackpressure()
+        );
+        System.out.println(
+            "✅ Server is up and running on port " + socket.getLocalPort() +
+                " (" + config.getExecutionMode().name().toLowerCase() + " threads, " +
+                config.getAcceptors() + " acceptor" + (config.getAcceptors() == 1 ? "" : "s") + ")"
+        );
+    }
+
+    /**
+     * @return the port the server listens on, the bound one when configured
+     *         with port 0
+     */
+    public int getPort() {
+        return socket.getLocalPort();
     }
 
+    /**
+     * Accept connections until {@link #shutdown()}. The calling thread is the
+     * first acceptor, the other configured acceptors get their own threads.
+     */
     public void acceptConnections() {
+        for (int i = 1; i < config.getAcceptors(); i++) {
+            ServerSocket listener = listeners[i % listeners.length];
+            Thread.ofPlatform().name("acceptor-" + i).start(() -> accept(listener));
+        }
+        accept(listeners[0]);
+    }
+
+    private void accept(ServerSocket listener) {
         try {
             while (true) {
-                Socket connection = socket.accept();
-                System.out.println(
-                    "🔌 Client connected: " +
-                        socket.getInetAddress().getHostAddress()
-                );
+                Socket connection = listener.accept();
+                try {
+                    config.configure(connection);
+                } catch (IOException e) {
+                    Log.warn("Failed to set socket options: %s", e.getMessage());
+                }
                 ClientHandler client = new ClientHandler(
                     connection,
                     null,
@@ -61,8 +114,34 @@ public class Server {
                 connectionManager.addClient(client);
             }
         } catch (IOException e) {
-            System.err.println("🔥 Server error: " + e.getMessage());
-            System.out.println("🛑 Server is shutting down.");
+            if (!listener.isClosed()) {
+                System.err.println("🔥 Server error: " + e.getMessage());
+            }
+            if (listener == listeners[0]) {
+                System.out.println("🛑 Server is shutting down.");
+            }
+        }
+    }
+
+    /**
+     * Close the listening sockets, which ends {@link #acceptConnections()},
+     * then disconnect clients and wait for their handlers.
+     */
+    public void shutdown() {
+        closeListeners();
+        connectionManager.shutdown(SHUTDOWN_TIMEOUT);
+    }
+
+    private void closeListeners() {
+        for (ServerSocket listener : listeners) {
+            if (listener == null) {
+                continue;
+            }
+            try {
+                listener.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 }
@@ -0,0 +1,580 @@
+package com.rasel.server;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import com.rasel.server.db.DatabaseManager;
+import com.rasel.server.logging.Log;
+import com.rasel.server.logging.LogFormat;
+
+/**
+ * Everything needed to start a {@link Server} or {@link NioServer}: where to
+ * listen and how, socket options, thread and queue sizing, persistence,
+ * metrics and logging.
+ *
+ * Each setting has a key, e.g. {@code outbound-high-watermark}, used as is
+ * in a properties file, as {@code --outbound-high-watermark=N} on the
+ * command line and as RASEL_OUTBOUND_HIGH_WATERMARK in the environment
+ * (LOG_* for the log-* keys). {@link #load(String[])} applies, in order, the
+ * defaults, the file named by {@code --config=PATH} or RASEL_CONFIG, the
+ * environment and the command line.
+ *
+ * Accepted sockets get TCP_NODELAY by default, small chat frames are not held
+ * back by Nagle's algorithm waiting for the previous frame's ACK. With
+ * {@code acceptors} above 1 every acceptor thread gets its own SO_REUSEPORT
+ * listener when {@code reuse-port} is set and the platform supports it, and
+ * shares a single listener otherwise.
+ */
+public final class ServerConfig {
+
+    public static final int DEFAULT_PORT = 12345;
+
+    public enum Io {
+        /** one (platform or virtual) thread per client, {@link Server} */
+        BLOCKING,
+        /** a few selector threads for all clients, {@link NioServer} */
+        NIO,
+    }
+
+    /**
+     * Every setting, as written in a properties file or after "--".
+     */
+    public static final List<String> KEYS = List.of(
+            "host", "port", "backlog", "acceptors", "reuse-port", "tcp-no-delay", "receive-buffer", "send-buffer",
+            "io", "execution", "reactors", "max-handlers",
+            "outbound-high-watermark", "outbound-low-watermark", "slow-consumer-policy",
+            "data-dir", "snapshot-interval", "metrics-interval",
+            "log-level", "log-async", "log-file", "log-format", "log-rotate-bytes", "log-rotate-seconds", "log-keep");
+
+    /** Command line help, printed for {@code --help} and invalid arguments */
+    public static final String USAGE = """
+            Usage: Rasel [--help] [--config=PATH] [--KEY=VALUE ...]
+              --host=ADDRESS             bind address (all interfaces)
+              --port=PORT                listening port (12345)
+              --backlog=N                accept backlog (128)
+              --acceptors=N              acceptor threads (1)
+              --reuse-port               one SO_REUSEPORT listener per acceptor
+              --tcp-no-delay=BOOL        disable Nagle on client sockets (true)
+              --receive-buffer=BYTES     SO_RCVBUF, 0 for the OS default
+              --send-buffer=BYTES        SO_SNDBUF, 0 for the OS default
+              --io=blocking|nio          --nio is short for --io=nio
+              --execution=platform|virtual  --virtual-threads for virtual
+              --reactors=N               nio selector threads (CPUs)
+              --max-handlers=N           concurrent blocking handlers, 0 unlimited
+              --outbound-high-watermark=BYTES, --outbound-low-watermark=BYTES
+              --slow-consumer-policy=disconnect|drop
+              --data-dir=PATH            persist the database there
+              --snapshot-interval=SECONDS (300)
+              --metrics-interval=SECONDS log metrics that often, 0 off
+              --log-level=LEVEL, --log-async, --log-file=PATH, --log-format=text|json|binary
+              --log-rotate-bytes=N, --log-rotate-seconds=N, --log-keep=N""";
+
+    private final String host;
+    private final int port;
+    private final int backlog;
+    private final int acceptors;
+    private final boolean reusePort;
+    private final boolean tcpNoDelay;
+    private final int receiveBufferSize;
+    private final int sendBufferSize;
+    private final Io io;
+    private final ExecutionMode executionMode;
+    private final int reactors;
+    private final int maxHandlers;
+    private final BackpressureSettings backpressure;
+    private final Path dataDirectory;
+    private final Duration snapshotInterval;
+    private final Duration metricsInterval;
+    private final Log.Level logLevel;
+    private final boolean logAsync;
+    private final Path logFile;
+    private final LogFormat logFormat;
+    private final long logRotateBytes;
+    private final Duration logRotateInterval;
+    private final int logKeep;
+
+    private ServerConfig(Builder builder) {
+        this.host = builder.host;
+        this.port = builder.port;
+        this.backlog = builder.backlog;
+        this.acceptors = builder.acceptors;
+        this.reusePort = builder.reusePort;
+        this.tcpNoDelay = builder.tcpNoDelay;
+        this.receiveBufferSize = builder.receiveBufferSize;
+        this.sendBufferSize = builder.sendBufferSize;
+        this.io = builder.io;
+        this.executionMode = builder.executionMode;
+        this.reactors = builder.reactors;
+        this.maxHandlers = builder.maxHandlers;
+        this.backpressure = new BackpressureSettings(builder.highWatermark, builder.lowWatermark, builder.policy);
+        this.dataDirectory = builder.dataDirectory;
+        this.snapshotInterval = builder.snapshotInterval;
+        this.metricsInterval = builder.metricsInterval;
+        this.logLevel = builder.logLevel;
+        this.logAsync = builder.logAsync;
+        this.logFile = builder.logFile;
+        this.logFormat = builder.logFormat;
+        this.logRotateBytes = builder.logRotateBytes;
+        this.logRotateInterval = builder.logRotateInterval;
+        this.logKeep = builder.logKeep;
+    }
+
+    public static ServerConfig defaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Resolve the configuration from the defaults, the properties file, the
+     * environment and {@code args}, later ones winning.
+     *
+     * @throws IllegalArgumentException for unknown keys or invalid values
+     * @throws IOException              if the properties file can't be read
+     */
+    public static ServerConfig load(String[] args) throws IOException {
+        Builder builder = builder();
+        String file = System.getenv("RASEL_CONFIG");
+        for (String arg : args) {
+            if (arg.startsWith("--config=")) {
+                file = arg.substring("--config=".length());
+            }
+        }
+        if (file != null && !file.isBlank()) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(Path.of(file))) {
+                properties.load(reader);
+            }
+            for (String key : properties.stringPropertyNames()) {
+                builder.set(key, properties.getProperty(key).trim());
+            }
+        }
+        for (String key : KEYS) {
+            String value = System.getenv(envName(key));
+            if (value != null && !value.isBlank()) {
+                builder.set(key, value.trim());
+            }
+        }
+        for (String arg : args) {
+            if (arg.startsWith("--config=")) {
+                continue;
+            }
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + arg);
+            }
+            int separator = arg.indexOf('=');
+            String key = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator < 0 ? "true" : arg.substring(separator + 1);
+            // Shorthands of earlier releases
+            switch (key) {
+                case "nio" -> builder.set("io", "nio");
+                case "virtual-threads" -> builder.set("execution", "virtual");
+                default -> builder.set(key, value);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the environment variable of a setting, e.g. RASEL_DATA_DIR or
+     *         LOG_FILE
+     */
+    static String envName(String key) {
+        String name = key.replace('-', '_').toUpperCase(Locale.ROOT);
+        return key.startsWith("log-") ? name : "RASEL_" + name;
+    }
+
+    /**
+     * Open a listening socket with the configured options.
+     *
+     * @param port the port to bind, the configured one or the port an
+     *             earlier SO_REUSEPORT listener got
+     */
+    ServerSocket listen(int port) throws IOException {
+        ServerSocket socket = new ServerSocket();
+        try {
+            socket.setReuseAddress(true);
+            if (reusePort && socket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            if (receiveBufferSize > 0) {
+                // Inherited by accepted sockets, must be set before bind for windows above 64K
+                socket.setReceiveBufferSize(receiveBufferSize);
+            }
+            socket.bind(address(port), backlog);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * {@link #listen(int)} for the non-blocking server, the channel is left in
+     * blocking mode for the acceptor threads.
+     */
+    ServerSocketChannel listenChannel(int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (reusePort && channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            if (receiveBufferSize > 0) {
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+            }
+            channel.bind(address(port), backlog);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of listeners to open: one per acceptor when
+     *         SO_REUSEPORT is requested and supported, otherwise one shared
+     */
+    int listenerCount() {
+        if (!reusePort || acceptors == 1) {
+            return 1;
+        }
+        try (ServerSocket probe = new ServerSocket()) {
+            if (probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                return acceptors;
+            }
+        } catch (IOException ignored) {
+        }
+        Log.warn("SO_REUSEPORT is not supported, %d acceptors share one listener", acceptors);
+        return 1;
+    }
+
+    /**
+     * Apply the per-connection options to an accepted socket.
+     */
+    void configure(Socket socket) throws IOException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        if (sendBufferSize > 0) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+    }
+
+    void configure(SocketChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+        if (sendBufferSize > 0) {
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        }
+    }
+
+    private InetSocketAddress address(int port) {
+        return host == null ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+    }
+
+    /**
+     * @return the bind address, null for all interfaces
+     */
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public int getAcceptors() {
+        return acceptors;
+    }
+
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public Io getIo() {
+        return io;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public int getReactors() {
+        return reactors;
+    }
+
+    public int getMaxHandlers() {
+        return maxHandlers;
+    }
+
+    public BackpressureSettings getBackpressure() {
+        return backpressure;
+    }
+
+    /**
+     * @return where the database is persisted, null for memory only
+     */
+    public Path getDataDirectory() {
+        return dataDirectory;
+    }
+
+    public Duration getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public Duration getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    /**
+     * @return the minimum log level, null to keep LOG_LEVEL's
+     */
+    public Log.Level getLogLevel() {
+        return logLevel;
+    }
+
+    public boolean isLogAsync() {
+        return logAsync;
+    }
+
+    /**
+     * @return the log file, null for the console
+     */
+    public Path getLogFile() {
+        return logFile;
+    }
+
+    public LogFormat getLogFormat() {
+        return logFormat;
+    }
+
+    public long getLogRotateBytes() {
+        return logRotateBytes;
+    }
+
+    public Duration getLogRotateInterval() {
+        return logRotateInterval;
+    }
+
+    public int getLogKeep() {
+        return logKeep;
+    }
+
+    public static final class Builder {
+
+        private String host;
+        private int port = DEFAULT_PORT;
+        private int backlog = 128;
+        private int acceptors = 1;
+        private boolean reusePort;
+        private boolean tcpNoDelay = true;
+        private int receiveBufferSize;
+        private int sendBufferSize;
+        private Io io = Io.BLOCKING;
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        private int reactors = Runtime.getRuntime().availableProcessors();
+        private int maxHandlers;
+        private long highWatermark = BackpressureSettings.DEFAULT.highWatermark();
+        private long lowWatermark = BackpressureSettings.DEFAULT.lowWatermark();
+        private SlowConsumerPolicy policy = BackpressureSettings.DEFAULT.policy();
+        private Path dataDirectory;
+        private Duration snapshotInterval = DatabaseManager.DEFAULT_SNAPSHOT_INTERVAL;
+        private Duration metricsInterval = Duration.ZERO;
+        private Log.Level logLevel;
+        private boolean logAsync;
+        private Path logFile;
+        private LogFormat logFormat = LogFormat.TEXT;
+        private long logRotateBytes;
+        private Duration logRotateInterval = Duration.ZERO;
+        private int logKeep = 10;
+
+        private Builder() {
+        }
+
+        /**
+         * Set a setting from its textual form.
+         *
+         * @throws IllegalArgumentException for an unknown key or invalid value
+         */
+        public Builder set(String key, String value) {
+            try {
+                switch (key) {
+                    case "host" -> host(value.isBlank() ? null : value);
+                    case "port" -> port(Integer.parseInt(value));
+                    case "backlog" -> backlog(Integer.parseInt(value));
+                    case "acceptors" -> acceptors(Integer.parseInt(value));
+                    case "reuse-port" -> reusePort(parseBoolean(value));
+                    case "tcp-no-delay" -> tcpNoDelay(parseBoolean(value));
+                    case "receive-buffer" -> receiveBufferSize(Integer.parseInt(value));
+                    case "send-buffer" -> sendBufferSize(Integer.parseInt(value));
+                    case "io" -> io(Io.valueOf(value.toUpperCase(Locale.ROOT)));
+                    case "execution" -> executionMode(ExecutionMode.valueOf(value.toUpperCase(Locale.ROOT)));
+                    case "reactors" -> reactors(Integer.parseInt(value));
+                    case "max-handlers" -> maxHandlers(Integer.parseInt(value));
+                    case "outbound-high-watermark" -> highWatermark = Long.parseLong(value);
+                    case "outbound-low-watermark" -> lowWatermark = Long.parseLong(value);
+                    case "slow-consumer-policy" -> policy = SlowConsumerPolicy.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "data-dir" -> dataDirectory(value.isBlank() ? null : Path.of(value));
+                    case "snapshot-interval" -> snapshotInterval(Duration.ofSeconds(Long.parseLong(value)));
+                    case "metrics-interval" -> metricsInterval(Duration.ofSeconds(Long.parseLong(value)));
+                    case "log-level" -> logLevel = Log.Level.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "log-async" -> logAsync = parseBoolean(value);
+                    case "log-file" -> {
+                        logFile = value.isBlank() ? null : Path.of(value);
+                        logAsync |= logFile != null;
+                    }
+                    case "log-format" -> logFormat = LogFormat.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "log-rotate-bytes" -> logRotateBytes = Long.parseLong(value);
+                    case "log-rotate-seconds" -> logRotateInterval = Duration.ofSeconds(Long.parseLong(value));
+                    case "log-keep" -> logKeep = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("Unknown setting " + key);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+            } catch (IllegalArgumentException e) {
+                if (e.getMessage() != null && e.getMessage().startsWith("Unknown setting")) {
+                    throw e;
+                }
+                throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+            }
+            return this;
+        }
+
+        public Builder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * @param port 0 binds an ephemeral port
+         */
+        public Builder port(int port) {
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("Invalid port " + port);
+            }
+            this.port = port;
+            return this;
+        }
+
+        public Builder backlog(int backlog) {
+            this.backlog = Math.max(1, backlog);
+            return this;
+        }
+
+        public Builder acceptors(int acceptors) {
+            this.acceptors = Math.max(1, acceptors);
+            return this;
+        }
+
+        public Builder reusePort(boolean reusePort) {
+            this.reusePort = reusePort;
+            return this;
+        }
+
+        public Builder tcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        public Builder receiveBufferSize(int bytes) {
+            this.receiveBufferSize = Math.max(0, bytes);
+            return this;
+        }
+
+        public Builder sendBufferSize(int bytes) {
+            this.sendBufferSize = Math.max(0, bytes);
+            return this;
+        }
+
+        public Builder io(Io io) {
+            this.io = io;
+            return this;
+        }
+
+        public Builder executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        public Builder reactors(int reactors) {
+            this.reactors = Math.max(1, reactors);
+            return this;
+        }
+
+        public Builder maxHandlers(int maxHandlers) {
+            this.maxHandlers = maxHandlers;
+            return this;
+        }
+
+        public Builder backpressure(BackpressureSettings backpressure) {
+            this.highWatermark = backpressure.highWatermark();
+            this.lowWatermark = backpressure.lowWatermark();
+            this.policy = backpressure.policy();
+            return this;
+        }
+
+        public Builder dataDirectory(Path dataDirectory) {
+            this.dataDirectory = dataDirectory;
+            return this;
+        }
+
+        public Builder snapshotInterval(Duration snapshotInterval) {
+            this.snapshotInterval = snapshotInterval;
+            return this;
+        }
+
+        public Builder metricsInterval(Duration metricsInterval) {
+            this.metricsInterval = metricsInterval;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the outbound watermarks don't fit
+         */
+        public ServerConfig build() {
+            return new ServerConfig(this);
+        }
+
+        private static boolean parseBoolean(String value) {
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "true", "yes", "on", "1" -> true;
+                case "false", "no", "off", "0" -> false;
+                default -> throw new IllegalArgumentException("Not a boolean: " + value);
+            };
+        }
+    }
+}
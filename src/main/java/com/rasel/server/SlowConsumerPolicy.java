@@ -0,0 +1,11 @@
+package com.rasel.server;
+
+/**
+ * What a connection does when its outbound queue passes the high watermark.
+ */
+public enum SlowConsumerPolicy {
+    /** drop new frames until the queue drains below the low watermark */
+    DROP,
+    /** disconnect the client, it has to reconnect and catch up */
+    DISCONNECT,
+}
@@ -0,0 +1,147 @@
+package com.rasel.server;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import com.rasel.common.FrameReader;
+import com.rasel.common.Protocol;
+import com.rasel.common.RequestParser;
+import com.rasel.common.ResponseFrame;
+import com.rasel.server.logging.Log;
+import com.rasel.server.metrics.Metrics;
+
+/**
+ * Blocking {@link ClientConnection} backed by a plain {@link Socket}.
+ *
+ * Requests are read frame by frame on the handler's own thread, responses are
+ * queued in an {@link OutboundQueue} and written by a dedicated (virtual)
+ * writer thread, so a client that stops reading only ever stalls its own
+ * writer, never the thread that sent it a message.
+ *
+ * The writer takes every frame queued so far as one batch and flushes once
+ * per batch, so the responses that pile up during a broadcast go out in a few
+ * large writes instead of one write per frame.
+ */
+final class SocketConnection implements ClientConnection {
+
+    // Frames taken from the queue at once, and the buffer they are coalesced in
+    private static final int MAX_BATCH_FRAMES = 64;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final Socket socket;
+
+    private final String remoteAddress;
+
+    private final OutboundQueue outbound;
+
+    private OutputStream out;
+
+    private FrameReader in;
+
+    private volatile int protocolVersion = Protocol.TEXT_VERSION;
+
+    SocketConnection(Socket socket, BackpressureSettings backpressure) {
+        this.socket = socket;
+        this.remoteAddress = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        this.outbound = new OutboundQueue(backpressure);
+        try {
+            in = new FrameReader(socket.getInputStream(), Protocol.END_OF_REQUEST);
+            out = new BufferedOutputStream(socket.getOutputStream(), WRITE_BUFFER_SIZE);
+            Thread.ofVirtual().name("client-writer-" + remoteAddress).start(this::writeLoop);
+
+            Log.debug("Initialized IO streams for client %s", remoteAddress);
+        } catch (IOException e) {
+            Log.error("Failed to initialize IO streams for client %s", e, remoteAddress);
+        }
+    }
+
+    /**
+     * Block until a complete request frame, text or binary, has been read.
+     *
+     * @return the parsed request
+     * @throws Exception if the stream ends early or the frame is invalid
+     */
+    RequestParser readRequest() throws Exception {
+        RequestParser request = in.readRequest();
+        protocolVersion = in.getVersion();
+        Metrics.recordParse(in.getDecodeNanos());
+        return request;
+    }
+
+    @Override
+    public void send(ResponseFrame frame) {
+        // A writable view so the writer can reach the array, it only ever reads it
+        switch (outbound.offer(ByteBuffer.wrap(frame.bytes(protocolVersion)))) {
+            case QUEUED -> {
+            }
+            case DROPPED ->
+                Log.debug("Dropped frame for slow client %s (%d bytes queued)",
+                        remoteAddress, outbound.getQueuedBytes());
+            case OVERFLOW -> {
+                // closing the socket also ends the reader, which unregisters the handler
+                Log.warn("Disconnecting slow client %s (%d bytes queued)",
+                        remoteAddress, outbound.getQueuedBytes());
+                close();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        ByteBuffer[] batch = new ByteBuffer[MAX_BATCH_FRAMES];
+        try {
+            int count;
+            while ((count = outbound.awaitBatch(batch)) > 0) {
+                // Frames larger than the buffer are written through, the rest coalesce
+                for (int i = 0; i < count; i++) {
+                    ByteBuffer frame = batch[i];
+                    out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+                    batch[i] = null;
+                }
+                out.flush();
+                Metrics.recordOutboundWrite();
+                outbound.complete(count);
+            }
+        } catch (IOException e) {
+            Log.debug("Write failed for client %s: %s", remoteAddress, e.getMessage());
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        return outbound.getQueuedBytes();
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return outbound.getDroppedFrames();
+    }
+
+    @Override
+    public void close() {
+        outbound.close();
+        try {
+            if (!socket.isClosed()) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            Log.warn("Error during client cleanup %s", e, remoteAddress);
+        }
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+}
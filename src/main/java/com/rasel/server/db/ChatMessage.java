@@ -9,6 +9,7 @@ public class ChatMessage {
     private final User sender; // domain reference
     private final String content;
     private final String timestamp; // ISO-8601 string
+    private long sequence; // position in the group's MessageLog, 0 until appended
 
     public ChatMessage(User sender, String content, Group group, String timestamp) {
         this.sender = sender;
@@ -23,7 +24,9 @@ public class ChatMessage {
         Group group = DatabaseManager.groupManager.getGroup(dto.group);
         // senderId is optional; resolve by name primarily
         User sender = DatabaseManager.userManager.getUser(dto.senderName);
-        return new ChatMessage(sender, dto.content, group, dto.timestamp);
+        ChatMessage message = new ChatMessage(sender, dto.content, group, dto.timestamp);
+        message.sequence = dto.sequence;
+        return message;
     }
 
     // For wire format serialization
@@ -31,11 +34,17 @@ public class ChatMessage {
         String senderId = this.sender != null ? this.sender.getId() : null;
         String senderName = this.sender != null ? this.sender.getUsername() : null;
         String groupName = this.group != null ? this.group.getName() : null;
-        return new ChatMessageDTO(groupName, senderId, senderName, content, timestamp);
+        ChatMessageDTO dto = new ChatMessageDTO(groupName, senderId, senderName, content, timestamp);
+        dto.sequence = sequence;
+        return dto;
     }
 
     public User getSender() { return sender; }
     public String getContent() { return content; }
     public String getTimestamp() { return timestamp; }
     public Group getGroup() { return group; }
+    public long getSequence() { return sequence; }
+
+    // Assigned once by MessageLog.append
+    void setSequence(long sequence) { this.sequence = sequence; }
 }
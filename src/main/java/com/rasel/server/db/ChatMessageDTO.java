@@ -10,6 +10,7 @@ public class ChatMessageDTO {
     public String senderName; // username
     public String content;
     public String timestamp;  // ISO-8601 string
+    public long sequence;     // per-group sequence number, 0 if unknown
 
     public ChatMessageDTO() {}
 
@@ -1,34 +1,112 @@
 package com.rasel.server.db;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * ChatMessageManager is responsible for managing chat messages in-memory.
- * It provides methods to add messages and retrieve them, either all or filtered
- * by group.
+ * Each group has its own append-only {@link MessageLog}, so storing and reading
+ * history costs as much as the group's traffic, not the whole server's.
+ * When a store directory is set, message bodies are kept off-heap in a
+ * {@link MessageStore} per group.
  */
 public class ChatMessageManager {
 
     /**
-     * Stores all chat messages in-memory.
+     * Message logs keyed by group name.
      */
-    private ArrayList<ChatMessage> messages = new ArrayList<>();
+    private final ConcurrentMap<String, MessageLog> logs = new ConcurrentHashMap<>();
+
+    private volatile Journal journal = Journal.NONE;
+
+    // Parent directory of the per-group message stores, null keeps messages on heap
+    private volatile Path storeDirectory;
+
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Store the bodies of groups created from now on under {@code directory},
+     * one sub directory per group.
+     */
+    void setStoreDirectory(Path directory) {
+        this.storeDirectory = directory;
+    }
 
     /**
-     * Adds a new chat message to the manager.
+     * Adds a new chat message to the log of its group and assigns its sequence
+     * number.
      *
      * @param message the ChatMessage to add
+     * @return the sequence number of the message within its group
+     */
+    public long addMessage(ChatMessage message) {
+        MessageLog log = getLog(message.getGroup());
+        // journal under the log's append lock so records follow sequence order
+        synchronized (log) {
+            long sequence = log.append(message);
+            journal.messageAppended(message);
+            return sequence;
+        }
+    }
+
+    /**
+     * Returns the message log of a group, creating it on first use.
+     *
+     * @param group the group
+     * @return the group's message log
+     */
+    public MessageLog getLog(Group group) {
+        return logs.computeIfAbsent(group.getName(), name -> {
+            Path directory = storeDirectory;
+            if (directory == null) {
+                return new MessageLog(name);
+            }
+            return new MessageLog(name, new MessageStore(storePath(directory, name)));
+        });
+    }
+
+    /**
+     * Returns the message log of a group, or null if nothing was ever sent to it.
+     */
+    MessageLog findLog(Group group) {
+        return logs.get(group.getName());
+    }
+
+    /**
+     * Reopens the stored log of a group from a snapshot, used while recovering
+     * the database.
      */
-    public void addMessage(ChatMessage message) {
-        messages.add(message); // Add message to the list
+    void restoreLog(Group group, long[] positions) throws java.io.IOException {
+        String name = group.getName();
+        MessageStore store = MessageStore.recover(storePath(storeDirectory, name), positions, positions.length);
+        logs.put(name, new MessageLog(name, store, positions.length));
     }
 
     /**
-     * Retrieves all chat messages managed by this instance.
+     * Directory of a group's store, hex keeps any group name a valid and
+     * case-insensitive-safe file name.
+     */
+    static Path storePath(Path directory, String group) {
+        return directory.resolve(HexFormat.of().formatHex(group.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Retrieves all chat messages managed by this instance, grouped by group.
      *
-     * @return an ArrayList of all ChatMessage objects
+     * @return a snapshot of all ChatMessage objects
      */
     public ArrayList<ChatMessage> getMessages() {
+        ArrayList<ChatMessage> messages = new ArrayList<>();
+        for (MessageLog log : logs.values()) {
+            messages.addAll(log.getAll());
+        }
         return messages;
     }
 
@@ -36,17 +114,55 @@ public class ChatMessageManager {
      * Retrieves all chat messages that belong to a specific group.
      *
      * @param group the Group to filter messages by
-     * @return an ArrayList of ChatMessage objects for the specified group
+     * @return the group's messages, oldest first
      */
     public ArrayList<ChatMessage> getMessagesForGroup(Group group) {
-        ArrayList<ChatMessage> groupMessages = new ArrayList<>(); // List to hold group messages
-        for (ChatMessage message : messages) {
-            // Check if the message belongs to the specified group
-            if (message.getGroup().equals(group)) {
-                groupMessages.add(message);
-            }
+        MessageLog log = logs.get(group.getName());
+        return log != null ? new ArrayList<>(log.getAll()) : new ArrayList<>();
+    }
+
+    /**
+     * Retrieves the latest messages of a group, oldest first.
+     *
+     * @param group the group
+     * @param limit maximum number of messages
+     */
+    public List<ChatMessage> getLatest(Group group, int limit) {
+        MessageLog log = logs.get(group.getName());
+        return log != null ? log.latest(limit) : List.of();
+    }
+
+    /**
+     * Retrieves up to {@code limit} messages of a group older than the given
+     * sequence number, oldest first.
+     */
+    public List<ChatMessage> getBefore(Group group, long sequence, int limit) {
+        MessageLog log = logs.get(group.getName());
+        return log != null ? log.before(sequence, limit) : List.of();
+    }
+
+    /**
+     * Builds a page of a group's history as a UTF-8 JSON array, oldest first.
+     * With {@code after} >= 0 the page follows that sequence, otherwise it ends
+     * before {@code before} (or at the latest message when negative).
+     */
+    public byte[] getPageJson(Group group, long before, long after, int limit) {
+        MessageLog log = logs.get(group.getName());
+        if (log == null) {
+            return new byte[] { '[', ']' };
+        }
+        if (after >= 0) {
+            return log.afterJson(after, limit);
         }
-        return groupMessages;
+        return log.beforeJson(before >= 0 ? before : Long.MAX_VALUE, limit);
     }
 
+    /**
+     * Retrieves up to {@code limit} messages of a group newer than the given
+     * sequence number, oldest first.
+     */
+    public List<ChatMessage> getAfter(Group group, long sequence, int limit) {
+        MessageLog log = logs.get(group.getName());
+        return log != null ? log.after(sequence, limit) : List.of();
+    }
 }
@@ -0,0 +1,30 @@
+package com.rasel.server.db;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes the wire view of a domain type, either as JSON or in the compact
+ * binary encoding. Implementations are stateless and shared, they read the
+ * domain object directly instead of building a DTO first.
+ *
+ * Codecs are registered per type in {@link Codecs}, which also owns the
+ * buffers they write to.
+ *
+ * @param <T> the domain type
+ */
+public interface Codec<T> {
+
+    /**
+     * Writes {@code value} as one JSON value.
+     */
+    void writeJson(JsonGenerator out, T value) throws IOException;
+
+    /**
+     * Writes {@code value} in the binary encoding, fields in the same order as
+     * the JSON view, strings with {@link Codecs#writeString(DataOutput, String)}.
+     */
+    void writeBinary(DataOutput out, T value) throws IOException;
+}
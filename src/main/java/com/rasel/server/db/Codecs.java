@@ -0,0 +1,240 @@
+package com.rasel.server.db;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Registry of the {@link Codec}s of the domain types, and the entry point for
+ * encoding them.
+ *
+ * The JSON views are the ones clients parse: a user is
+ * {@code {"username","id"}}, a group is
+ * {@code {"name","admin":{"username"},"members":[{"username"}],"version"}} and a message
+ * has the {@link ChatMessageDTO} fields. The binary encoding writes the same
+ * fields positionally: strings as a varint of the UTF-8 length plus one (0 for
+ * null) followed by the bytes, numbers and counts as unsigned varints, and a
+ * collection as its count followed by the elements.
+ *
+ * Encoding writes into a reused per-thread buffer (see {@link JsonSupport}) and
+ * returns a copy, so the only allocation per call is the result.
+ */
+public final class Codecs {
+
+    public enum Format {
+        JSON, BINARY
+    }
+
+    private static final ConcurrentMap<Class<?>, Codec<?>> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(User.class, new UserCodec());
+        register(Group.class, new GroupCodec());
+        register(ChatMessage.class, new ChatMessageCodec());
+    }
+
+    private Codecs() {
+    }
+
+    /**
+     * Registers (or replaces) the codec of a type.
+     */
+    public static <T> void register(Class<T> type, Codec<T> codec) {
+        CODECS.put(type, codec);
+    }
+
+    /**
+     * @return the codec registered for {@code type}
+     * @throws IllegalArgumentException if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Codec<T> forType(Class<T> type) {
+        Codec<T> codec = (Codec<T>) CODECS.get(type);
+        if (codec == null) {
+            throw new IllegalArgumentException("No codec registered for " + type.getName());
+        }
+        return codec;
+    }
+
+    /**
+     * Encodes a single value.
+     */
+    public static <T> byte[] encode(Class<T> type, T value, Format format) {
+        Codec<T> codec = forType(type);
+        if (format == Format.JSON) {
+            return JsonSupport.write(out -> writeJson(out, codec, value), false);
+        }
+        return JsonSupport.buffered(stream -> writeBinary(new DataOutputStream(stream), codec, value));
+    }
+
+    /**
+     * Encodes a collection as a JSON array or a counted binary sequence.
+     */
+    public static <T> byte[] encodeAll(Class<T> type, Collection<? extends T> values, Format format) {
+        Codec<T> codec = forType(type);
+        if (format == Format.JSON) {
+            return JsonSupport.write(out -> {
+                out.writeStartArray();
+                for (T value : values) {
+                    writeJson(out, codec, value);
+                }
+                out.writeEndArray();
+            }, false);
+        }
+        return JsonSupport.buffered(stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            // The collection may be a live view, count what is actually written
+            Object[] snapshot = values.toArray();
+            writeVarLong(out, snapshot.length);
+            for (Object value : snapshot) {
+                writeBinary(out, codec, type.cast(value));
+            }
+        });
+    }
+
+    /**
+     * @return the compact JSON view of {@code value}
+     */
+    public static <T> String toJson(Class<T> type, T value) {
+        return new String(encode(type, value, Format.JSON), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the compact JSON array of the views of {@code values}
+     */
+    public static <T> String toJsonArray(Class<T> type, Collection<? extends T> values) {
+        return new String(encodeAll(type, values, Format.JSON), StandardCharsets.UTF_8);
+    }
+
+    private static <T> void writeJson(JsonGenerator out, Codec<T> codec, T value) throws IOException {
+        if (value == null) {
+            out.writeNull();
+        } else {
+            codec.writeJson(out, value);
+        }
+    }
+
+    private static <T> void writeBinary(DataOutput out, Codec<T> codec, T value) throws IOException {
+        // Presence byte, the views themselves have no null representation
+        out.writeBoolean(value != null);
+        if (value != null) {
+            codec.writeBinary(out, value);
+        }
+    }
+
+    /**
+     * Writes a string in the binary encoding.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes a non-negative number as an unsigned LEB128 varint.
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static final class UserCodec implements Codec<User> {
+
+        @Override
+        public void writeJson(JsonGenerator out, User user) throws IOException {
+            out.writeStartObject();
+            out.writeStringField("username", user.getUsername());
+            out.writeStringField("id", user.getId());
+            out.writeEndObject();
+        }
+
+        @Override
+        public void writeBinary(DataOutput out, User user) throws IOException {
+            writeString(out, user.getUsername());
+            writeString(out, user.getId());
+        }
+    }
+
+    private static final class GroupCodec implements Codec<Group> {
+
+        @Override
+        public void writeJson(JsonGenerator out, Group group) throws IOException {
+            // Read first, the contents are at least as new as the version
+            long version = group.getVersion();
+            User admin = group.getAdmin();
+            out.writeStartObject();
+            out.writeStringField("name", group.getName());
+            out.writeFieldName("admin");
+            out.writeStartObject();
+            out.writeStringField("username", admin != null ? admin.getUsername() : null);
+            out.writeEndObject();
+            out.writeArrayFieldStart("members");
+            for (User member : group.getMembers()) {
+                out.writeStartObject();
+                out.writeStringField("username", member.getUsername());
+                out.writeEndObject();
+            }
+            out.writeEndArray();
+            out.writeNumberField("version", version);
+            out.writeEndObject();
+        }
+
+        @Override
+        public void writeBinary(DataOutput out, Group group) throws IOException {
+            long version = group.getVersion();
+            User admin = group.getAdmin();
+            writeString(out, group.getName());
+            writeString(out, admin != null ? admin.getUsername() : null);
+            User[] members = group.getMembers().toArray(new User[0]);
+            writeVarLong(out, members.length);
+            for (User member : members) {
+                writeString(out, member.getUsername());
+            }
+            writeVarLong(out, version);
+        }
+    }
+
+    private static final class ChatMessageCodec implements Codec<ChatMessage> {
+
+        // Same fields and order as Jackson writes a ChatMessageDTO
+        @Override
+        public void writeJson(JsonGenerator out, ChatMessage message) throws IOException {
+            User sender = message.getSender();
+            Group group = message.getGroup();
+            out.writeStartObject();
+            out.writeStringField("group", group != null ? group.getName() : null);
+            out.writeStringField("senderId", sender != null ? sender.getId() : null);
+            out.writeStringField("senderName", sender != null ? sender.getUsername() : null);
+            out.writeStringField("content", message.getContent());
+            out.writeStringField("timestamp", message.getTimestamp());
+            out.writeNumberField("sequence", message.getSequence());
+            out.writeEndObject();
+        }
+
+        @Override
+        public void writeBinary(DataOutput out, ChatMessage message) throws IOException {
+            User sender = message.getSender();
+            Group group = message.getGroup();
+            writeString(out, group != null ? group.getName() : null);
+            writeString(out, sender != null ? sender.getId() : null);
+            writeString(out, sender != null ? sender.getUsername() : null);
+            writeString(out, message.getContent());
+            writeString(out, message.getTimestamp());
+            writeVarLong(out, message.getSequence());
+        }
+    }
+}
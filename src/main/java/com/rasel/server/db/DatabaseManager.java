@@ -1,14 +1,183 @@
 package com.rasel.server.db;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.rasel.server.logging.Log;
+
 /**
  * manage database connection, retrieval, pools, data, etc.
- ** 
+ **
  * note**: right now, for simplicity, the current implementation is not using a
  * database, it store data inside variables ( memory ),
  * I will implement database logic later,
+ *
+ * When opened on a data directory every mutation is also appended to a
+ * {@link WriteAheadLog} there. A background thread periodically writes a
+ * {@link Snapshot} and deletes the log segments it covers, so a restart loads
+ * the latest snapshot and replays only the log tail written after it.
+ * Without {@link #open(Path)} the data lives in memory only.
  */
 public class DatabaseManager {
     public static UserManager userManager = new UserManager();
     public static GroupManager groupManager = new GroupManager();
     public static ChatMessageManager chatMessageManager = new ChatMessageManager();
+
+    public static final Duration DEFAULT_SNAPSHOT_INTERVAL = Duration.ofMinutes(5);
+
+    // Snapshots kept on disk, the log is kept from the oldest one so an
+    // unreadable newest snapshot can fall back to the previous one
+    private static final int RETAINED_SNAPSHOTS = 2;
+
+    private static WriteAheadLog wal;
+    private static Path snapshotDirectory;
+    private static ScheduledExecutorService snapshotter;
+    private static long snapshotLsn;
+
+    public static void open(Path dataDirectory) throws IOException {
+        open(dataDirectory, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Recover the database from the latest snapshot and the write-ahead log in
+     * {@code dataDirectory} and journal every further mutation to it. Call
+     * once, before clients are served.
+     *
+     * @param snapshotInterval time between snapshots, zero or negative only
+     *                         snapshots on {@link #close()}
+     */
+    public static synchronized void open(Path dataDirectory, Duration snapshotInterval) throws IOException {
+        if (wal != null) {
+            throw new IllegalStateException("Database already open");
+        }
+        long started = System.nanoTime();
+        Path messages = dataDirectory.resolve("messages");
+        snapshotDirectory = dataDirectory.resolve("snapshots");
+        chatMessageManager.setStoreDirectory(messages);
+
+        snapshotLsn = Snapshot.load(snapshotDirectory, userManager, groupManager, chatMessageManager);
+        if (snapshotLsn == 0) {
+            // Without a snapshot the message stores are rebuilt from the whole log
+            deleteRecursively(messages);
+        } else {
+            deleteUnknownStores(messages);
+        }
+
+        WriteAheadLog log = new WriteAheadLog(dataDirectory.resolve("wal"));
+        long replayed = log.replay(snapshotLsn, userManager, groupManager, chatMessageManager);
+        log.start();
+        userManager.setJournal(log);
+        groupManager.setJournal(log);
+        chatMessageManager.setJournal(log);
+        wal = log;
+        Log.info(
+                "Database opened at %s, snapshot lsn=%d, replayed %d records in %d ms",
+                dataDirectory,
+                snapshotLsn,
+                replayed,
+                (System.nanoTime() - started) / 1_000_000);
+
+        if (snapshotInterval.isPositive()) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("db-snapshot").daemon(true).factory());
+            long millis = snapshotInterval.toMillis();
+            snapshotter.scheduleWithFixedDelay(DatabaseManager::snapshot, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write a snapshot if anything changed since the last one and compact the
+     * write-ahead log. Writers keep going while it runs.
+     */
+    static synchronized void snapshot() {
+        if (wal != null) {
+            snapshot(wal, snapshotDirectory);
+        }
+    }
+
+    private static synchronized void snapshot(WriteAheadLog log, Path directory) {
+        // Changes are journaled after they are applied, so everything up to
+        // this lsn is in the managers already
+        long lsn = log.lastLsn();
+        if (lsn == snapshotLsn) {
+            return;
+        }
+        log.requestRoll();
+        long started = System.nanoTime();
+        try {
+            Path file = Snapshot.write(directory, lsn, userManager, groupManager, chatMessageManager);
+            snapshotLsn = lsn;
+            long keepFrom = Snapshot.prune(directory, RETAINED_SNAPSHOTS);
+            int compacted = log.deleteSegmentsThrough(keepFrom);
+            Log.info(
+                    "Snapshot %s written in %d ms, %d log segments compacted",
+                    file.getFileName(),
+                    (System.nanoTime() - started) / 1_000_000,
+                    compacted);
+        } catch (IOException e) {
+            Log.error("Snapshot failed: %s", e.getMessage());
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    // Stores of groups created after the snapshot are rebuilt by the replay
+    private static void deleteUnknownStores(Path messages) throws IOException {
+        if (!Files.isDirectory(messages)) {
+            return;
+        }
+        Set<Path> known = new HashSet<>();
+        for (Group group : groupManager.getAllGroups()) {
+            known.add(ChatMessageManager.storePath(messages, group.getName()));
+        }
+        try (Stream<Path> stores = Files.list(messages)) {
+            for (Path store : stores.toList()) {
+                if (!known.contains(store)) {
+                    deleteRecursively(store);
+                }
+            }
+        }
+    }
+
+    /**
+     * Flush outstanding journal records to disk, stop journaling and write a
+     * final snapshot so the next start has nothing to replay.
+     */
+    public static synchronized void close() {
+        if (wal == null) {
+            return;
+        }
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+            snapshotter = null;
+        }
+        userManager.setJournal(Journal.NONE);
+        groupManager.setJournal(Journal.NONE);
+        chatMessageManager.setJournal(Journal.NONE);
+        try {
+            wal.close();
+        } catch (IOException e) {
+            Log.error("Failed to close write-ahead log: %s", e.getMessage());
+        }
+        snapshot(wal, snapshotDirectory);
+        wal = null;
+    }
 }
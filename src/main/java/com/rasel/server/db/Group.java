@@ -1,11 +1,16 @@
 package com.rasel.server.db;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a group in the chat server. Each group has a name, an admin, and a
- * list of members.
+ * set of members.
  * Provides methods to manage group membership and retrieve group information.
+ * Membership is changed through {@link GroupManager}, which keeps its
+ * per-user index in sync.
  */
 public class Group {
 
@@ -14,17 +19,29 @@ public class Group {
      */
     final private String name;
     /**
-     * The list of users who are members of this group.
+     * The users who are members of this group, O(1) membership checks and safe
+     * to iterate while members are added.
      */
-    ArrayList<User> members = new ArrayList<>();
+    final Set<User> members = ConcurrentHashMap.newKeySet();
     /**
      * The admin user of this group.
      */
-    User admin;
+    volatile User admin;
+    /**
+     * Cached JSON view of the group, and of its members as users. Bumped by
+     * {@link GroupManager} whenever the admin or the members change.
+     */
+    final VersionedPayload view = new VersionedPayload();
+    final VersionedPayload membersView = new VersionedPayload();
+    /**
+     * Version of the group's last change, assigned by {@link GroupManager}
+     * from a server-wide counter.
+     */
+    volatile long version;
 
     /**
      * Constructs a new Group with the specified name and admin.
-     * The admin is automatically added to the members list.
+     * The admin is automatically added to the members.
      *
      * @param name  the name of the group
      * @param admin the admin user of the group
@@ -45,30 +62,47 @@ public class Group {
     }
 
     /**
-     * Returns the list of members in the group.
+     * @return the version of the group's last change, newer changes have
+     *         higher versions
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the members of the group.
      *
-     * @return the list of group members
+     * @return a read-only live view of the group members
+     */
+    public Set<User> getMembers() {
+        return Collections.unmodifiableSet(members);
+    }
+
+    /**
+     * @return the number of members in the group
      */
-    public ArrayList<User> getMembers() {
-        return members;
+    public int getMemberCount() {
+        return members.size();
     }
 
     /**
      * Adds a user to the group members.
      *
      * @param user the user to add
+     * @return false if the user already was a member
      */
-    public void addMember(User user) {
-        members.add(user);
+    boolean addMember(User user) {
+        return members.add(user);
     }
 
     /**
      * Removes a user from the group members.
      *
      * @param user the user to remove
+     * @return false if the user was not a member
      */
-    public void removeMember(User user) {
-        members.remove(user);
+    boolean removeMember(User user) {
+        return members.remove(user);
     }
 
     /**
@@ -1,86 +1,244 @@
 package com.rasel.server.db;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manage groups in-memory.
+ *
+ * Groups are indexed by name, and a reverse index maps each user id to the
+ * groups they belong to, so listing a user's groups costs as much as the
+ * number of groups they are in rather than the number of groups on the
+ * server. Membership changes of a group are serialized on the group, reads
+ * never lock.
+ *
+ * The JSON of every group and of every user's group list is cached in a
+ * {@link VersionedPayload}. A mutation bumps the versions of the group and of
+ * the lists of every member it affects, so list requests between mutations
+ * return the cached encoding. Every mutation also gets the next version from a
+ * server-wide counter, which clients use to order group deltas.
  */
 public class GroupManager {
 
-    private final ArrayList<Group> groups = new ArrayList<>();
+    private final ConcurrentMap<String, Group> groups = new ConcurrentHashMap<>();
+
+    // user id -> groups the user is a member of
+    private final ConcurrentMap<String, Set<Group>> memberships = new ConcurrentHashMap<>();
+
+    // user id -> cached JSON of the user's groups, created on first request
+    private final ConcurrentMap<String, VersionedPayload> groupLists = new ConcurrentHashMap<>();
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private volatile Journal journal = Journal.NONE;
+
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
 
     public Group createGroup(String name, User admin) throws Exception {
-        if (getGroup(name) != null) {
-            throw new Exception("Group already exists");
+        if (name == null) {
+            throw new Exception("Group name is required");
         }
         Group group = new Group(name, admin);
-        groups.add(group);
+        if (groups.putIfAbsent(name, group) != null) {
+            throw new Exception("Group already exists");
+        }
+        index(admin, group);
+        // journaled once visible, so a snapshot taken at its lsn contains it
+        journal.groupCreated(group);
+        changed(group);
         return group;
     }
 
-    public Group getGroup(String name) {
-        for (Group group : groups) {
-            if (group.getName().equals(name)) {
-                return group;
-            }
+    /**
+     * Re-insert a persisted group with its members, used while recovering the
+     * database.
+     */
+    void restoreGroup(String name, User admin, Iterable<User> members) {
+        Group group = new Group(name, admin);
+        for (User member : members) {
+            group.addMember(member);
         }
-        return null;
+        groups.put(name, group);
+        for (User member : group.members) {
+            index(member, group);
+        }
+        changed(group);
+    }
+
+    public Group getGroup(String name) {
+        return name != null ? groups.get(name) : null;
     }
 
-    public void addMember(String groupName, User user) throws Exception {
+    /**
+     * @return the version of the group after the change
+     */
+    public long addMember(String groupName, User user) throws Exception {
         Group group = getGroup(groupName);
         if (group == null) {
             throw new Exception("Group not found");
         }
-        if (group.isMember(user)) {
-            throw new Exception("User is already a member");
+        synchronized (group) {
+            if (!group.addMember(user)) {
+                throw new Exception("User is already a member");
+            }
+            index(user, group);
+            journal.memberAdded(group, user);
+            return changed(group);
         }
-        group.addMember(user);
     }
 
-    public void removeMember(String groupName, User user) throws Exception {
+    /**
+     * @return the version of the group after the change
+     */
+    public long removeMember(String groupName, User user) throws Exception {
         Group group = getGroup(groupName);
         if (group == null) {
             throw new Exception("Group not found");
         }
-        if (!group.isMember(user)) {
-            throw new Exception("User is not a member");
-        }
-        if (group.isAdmin(user)) {
-            throw new Exception("Admin cannot be removed");
+        synchronized (group) {
+            if (!group.isMember(user)) {
+                throw new Exception("User is not a member");
+            }
+            if (group.isAdmin(user)) {
+                throw new Exception("Admin cannot be removed");
+            }
+            group.removeMember(user);
+            unindex(user, group);
+            journal.memberRemoved(group, user);
+            changed(user);
+            return changed(group);
         }
-        group.removeMember(user);
     }
 
-    public ArrayList<Group> getAllGroups() {
-        return groups;
+    /**
+     * @return a snapshot of all groups, in no particular order
+     */
+    public List<Group> getAllGroups() {
+        return List.copyOf(groups.values());
     }
 
     /**
      * return all groups that user is member of.
-     * 
+     *
      * @param user
      * @return
      */
-    public ArrayList<Group> getUserGruops(User user) {
-        ArrayList<Group> userGroups = new ArrayList<>();
-        for (Group group : groups) {
-            if (group.isMember(user)) {
-                userGroups.add(group);
-            }
+    public List<Group> getUserGruops(User user) {
+        if (user == null) {
+            return new ArrayList<>();
         }
-        return userGroups;
+        Set<Group> userGroups = memberships.get(user.getId());
+        return userGroups != null ? new ArrayList<>(userGroups) : new ArrayList<>();
     }
 
-    public void transferAdmin(String groupName, User newAdmin)
+    /**
+     * @return the version of the group after the change
+     */
+    public long transferAdmin(String groupName, User newAdmin)
             throws Exception {
         Group group = getGroup(groupName);
         if (group == null) {
             throw new Exception("Group not found");
         }
-        if (!group.isMember(newAdmin)) {
-            throw new Exception("New admin must be a current member");
+        synchronized (group) {
+            if (!group.isMember(newAdmin)) {
+                throw new Exception("New admin must be a current member");
+            }
+            group.admin = newAdmin;
+            journal.adminTransferred(group, newAdmin);
+            return changed(group);
+        }
+    }
+
+    /**
+     * @return the UTF-8 JSON view of a group, cached until it changes, must
+     *         not be modified
+     */
+    public byte[] getGroupJson(Group group) {
+        return group.view.get(() -> Codecs.encode(Group.class, group, Codecs.Format.JSON));
+    }
+
+    /**
+     * @return the UTF-8 JSON array of a group's members as users, cached until
+     *         the membership changes, must not be modified
+     */
+    public byte[] getMembersJson(Group group) {
+        return group.membersView.get(() -> Codecs.encodeAll(User.class, group.getMembers(), Codecs.Format.JSON));
+    }
+
+    /**
+     * Returns the UTF-8 JSON array of the groups a user is a member of, joined
+     * from the cached views of those groups and cached itself until one of
+     * them or the user's membership changes. Must not be modified.
+     */
+    public byte[] getUserGroupsJson(User user) {
+        if (user == null) {
+            return new byte[] { '[', ']' };
+        }
+        return groupList(user).get(() -> {
+            List<byte[]> views = new ArrayList<>();
+            // brackets and separators
+            int length = 1;
+            for (Group group : getUserGruops(user)) {
+                byte[] view = getGroupJson(group);
+                views.add(view);
+                length += view.length + 1;
+            }
+            ByteBuffer json = ByteBuffer.allocate(Math.max(length, 2));
+            json.put((byte) '[');
+            for (int i = 0; i < views.size(); i++) {
+                if (i > 0) {
+                    json.put((byte) ',');
+                }
+                json.put(views.get(i));
+            }
+            return json.put((byte) ']').array();
+        });
+    }
+
+    /**
+     * @return the version of a user's group list, increases whenever the
+     *         result of {@link #getUserGroupsJson(User)} may change
+     */
+    public long getUserGroupsVersion(User user) {
+        return user != null ? groupList(user).version() : 0;
+    }
+
+    private VersionedPayload groupList(User user) {
+        return groupLists.computeIfAbsent(user.getId(), id -> new VersionedPayload());
+    }
+
+    // Called once a mutation of the group is visible, returns its version
+    private long changed(Group group) {
+        long version = versions.incrementAndGet();
+        group.version = version;
+        group.view.bump();
+        group.membersView.bump();
+        for (User member : group.members) {
+            changed(member);
+        }
+        return version;
+    }
+
+    private void changed(User user) {
+        groupList(user).bump();
+    }
+
+    private void index(User user, Group group) {
+        memberships.computeIfAbsent(user.getId(), id -> ConcurrentHashMap.newKeySet()).add(group);
+    }
+
+    private void unindex(User user, Group group) {
+        Set<Group> userGroups = memberships.get(user.getId());
+        if (userGroups != null) {
+            userGroups.remove(group);
         }
-        group.admin = newAdmin;
     }
 }
@@ -0,0 +1,32 @@
+package com.rasel.server.db;
+
+/**
+ * Receives every mutation of the in-memory database, in the order it was
+ * applied, so it can be made durable.
+ *
+ * The managers call it while they still hold the lock that orders the
+ * mutation, implementations must only enqueue and never block on I/O.
+ */
+interface Journal {
+
+    Journal NONE = new Journal() {
+    };
+
+    default void userCreated(User user) {
+    }
+
+    default void groupCreated(Group group) {
+    }
+
+    default void memberAdded(Group group, User user) {
+    }
+
+    default void memberRemoved(Group group, User user) {
+    }
+
+    default void adminTransferred(Group group, User admin) {
+    }
+
+    default void messageAppended(ChatMessage message) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.rasel.server.db;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Shared JSON machinery for the {@link Codecs} and the parsers.
+ *
+ * An {@link ObjectMapper} is expensive to build and caches the serializers it
+ * resolves, so there is a single one, configured once and never changed
+ * afterwards, which makes it and the {@link ObjectReader}s derived from it safe
+ * to share between threads. Readers are resolved once per type.
+ *
+ * Hot paths skip data binding altogether and write their fields with a
+ * {@link JsonGenerator} into a buffer borrowed from a small shared pool, see
+ * {@link #write(Body, boolean)}. The pool is bounded rather than per thread,
+ * with a virtual thread per connection a per-thread buffer would stay
+ * allocated for the life of every connection.
+ */
+public final class JsonSupport {
+
+    /**
+     * The shared mapper, reading ignores unknown properties.
+     */
+    public static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    // Idle buffers, enough for every core to encode at once; a buffer returned
+    // to a full pool is left to the GC
+    private static final BlockingQueue<ByteArrayBuilder> BUFFERS =
+            new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
+
+    private JsonSupport() {
+    }
+
+    /**
+     * Writes a JSON value with a streaming generator.
+     */
+    @FunctionalInterface
+    public interface Body {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * @return a reader pre-resolved for values of {@code type}
+     */
+    public static ObjectReader reader(Class<?> type) {
+        return READERS.computeIfAbsent(type, MAPPER::readerFor);
+    }
+
+    /**
+     * Runs {@code body} against a generator writing to a pooled buffer and
+     * returns a copy of the output.
+     */
+    public static byte[] write(Body body, boolean indent) {
+        return buffered(out -> {
+            try (JsonGenerator generator = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+                if (indent) {
+                    generator.useDefaultPrettyPrinter();
+                }
+                body.write(generator);
+            }
+        });
+    }
+
+    /**
+     * Output written to a stream, see {@link #buffered(Output)}.
+     */
+    @FunctionalInterface
+    interface Output {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Runs {@code output} against a pooled buffer and returns a copy of what
+     * it wrote.
+     */
+    static byte[] buffered(Output output) {
+        // A nested call (output that encodes another value) takes a buffer of its own
+        ByteArrayBuilder buffer = BUFFERS.poll();
+        if (buffer == null) {
+            buffer = new ByteArrayBuilder();
+        }
+        try {
+            output.write(buffer);
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // reset keeps a single block, bounded by Jackson's maximum block size
+            buffer.reset();
+            BUFFERS.offer(buffer);
+        }
+    }
+}
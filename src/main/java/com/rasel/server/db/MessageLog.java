@@ -0,0 +1,252 @@
+package com.rasel.server.db;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only message history of a single group.
+ *
+ * Every appended message gets the next sequence number, starting at 1, which
+ * doubles as its position in the log. Messages are stored in fixed-size chunks
+ * so the log grows without copying old entries. Appends are serialized per log
+ * (one lock per group, so groups never contend with each other); reads take no
+ * lock and see every message whose append completed before the read started.
+ *
+ * With a {@link MessageStore} attached every message is also written there and
+ * only the most recent chunks are kept as objects, older messages are read
+ * back from the store, and history pages are built from its stored JSON.
+ */
+public class MessageLog {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // Chunks kept on heap when backed by a store, the newest one included
+    private static final int RETAINED_CHUNKS = 2;
+
+    private final String group;
+    private final MessageStore store;
+
+    // Chunk directory, replaced by a larger copy when full. Written under the
+    // append lock; published to readers by the volatile write of size.
+    private ChatMessage[][] chunks = new ChatMessage[4][];
+
+    // Number of published messages, also the last assigned sequence.
+    private volatile long size;
+
+    MessageLog(String group) {
+        this(group, null);
+    }
+
+    MessageLog(String group, MessageStore store) {
+        this.group = group;
+        this.store = store;
+    }
+
+    /**
+     * Reopens a log whose first {@code size} messages are already in the store,
+     * they are read back from it on demand.
+     */
+    MessageLog(String group, MessageStore store, long size) {
+        this(group, store);
+        int needed = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS) + 1;
+        chunks = new ChatMessage[Math.max(4, Integer.highestOneBit(needed) << 1)][];
+        this.size = size;
+    }
+
+    /**
+     * @return the name of the group this log belongs to
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * Appends a message and assigns it the next sequence number.
+     *
+     * @param message the message to append
+     * @return the sequence number of the message
+     */
+    public synchronized long append(ChatMessage message) {
+        long sequence = size + 1;
+        int chunk = (int) ((sequence - 1) >>> CHUNK_BITS);
+        if (chunk == chunks.length) {
+            ChatMessage[][] grown = new ChatMessage[chunks.length * 2][];
+            System.arraycopy(chunks, 0, grown, 0, chunks.length);
+            chunks = grown;
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new ChatMessage[CHUNK_SIZE];
+            if (store != null && chunk >= RETAINED_CHUNKS) {
+                // Readers that still see it finish the read, later ones go to the store
+                chunks[chunk - RETAINED_CHUNKS] = null;
+            }
+        }
+        message.setSequence(sequence);
+        if (store != null) {
+            store.append(sequence, encode(message));
+        }
+        chunks[chunk][(int) ((sequence - 1) & CHUNK_MASK)] = message;
+        size = sequence;
+        return sequence;
+    }
+
+    /**
+     * @return the number of messages in the log, which is also the sequence of
+     *         the latest message (0 when empty)
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the message with the given sequence number.
+     *
+     * @param sequence the sequence number
+     * @return the message, or null if the sequence is out of range
+     */
+    public ChatMessage get(long sequence) {
+        long last = size;
+        if (sequence < 1 || sequence > last) {
+            return null;
+        }
+        return at(chunks, sequence);
+    }
+
+    /**
+     * Returns the latest messages, oldest first.
+     *
+     * @param limit maximum number of messages
+     */
+    public List<ChatMessage> latest(int limit) {
+        return before(Long.MAX_VALUE, limit);
+    }
+
+    /**
+     * Returns up to {@code limit} messages with a sequence lower than
+     * {@code sequence}, the ones closest to it, oldest first.
+     *
+     * @param sequence exclusive upper bound
+     * @param limit    maximum number of messages
+     */
+    public List<ChatMessage> before(long sequence, int limit) {
+        long last = size;
+        long to = Math.min(sequence - 1, last);
+        long from = Math.max(1, to - Math.max(limit, 0) + 1);
+        return range(from, to);
+    }
+
+    /**
+     * Returns up to {@code limit} messages with a sequence greater than
+     * {@code sequence}, oldest first.
+     *
+     * @param sequence exclusive lower bound
+     * @param limit    maximum number of messages
+     */
+    public List<ChatMessage> after(long sequence, int limit) {
+        long last = size;
+        long from = Math.max(1, sequence + 1);
+        long to = Math.min(last, from + Math.max(limit, 0) - 1);
+        return range(from, to);
+    }
+
+    /**
+     * Same as {@link #before(long, int)}, as a UTF-8 JSON array of
+     * {@link ChatMessageDTO}.
+     */
+    public byte[] beforeJson(long sequence, int limit) {
+        long last = size;
+        long to = Math.min(sequence - 1, last);
+        long from = Math.max(1, to - Math.max(limit, 0) + 1);
+        return json(from, to);
+    }
+
+    /**
+     * Same as {@link #after(long, int)}, as a UTF-8 JSON array of
+     * {@link ChatMessageDTO}.
+     */
+    public byte[] afterJson(long sequence, int limit) {
+        long last = size;
+        long from = Math.max(1, sequence + 1);
+        long to = Math.min(last, from + Math.max(limit, 0) - 1);
+        return json(from, to);
+    }
+
+    /**
+     * @return a snapshot of every message in the log, oldest first
+     */
+    public List<ChatMessage> getAll() {
+        return range(1, size);
+    }
+
+    // Caller must have read size (volatile) before reading chunks, which makes
+    // every entry up to that size visible.
+    private List<ChatMessage> range(long from, long to) {
+        if (from > to) {
+            return new ArrayList<>();
+        }
+        ChatMessage[][] directory = chunks;
+        ArrayList<ChatMessage> result = new ArrayList<>((int) (to - from + 1));
+        for (long sequence = from; sequence <= to; sequence++) {
+            result.add(at(directory, sequence));
+        }
+        return result;
+    }
+
+    private byte[] json(long from, long to) {
+        if (store == null) {
+            return Codecs.encodeAll(ChatMessage.class, range(from, to), Codecs.Format.JSON);
+        }
+        if (from > to) {
+            return new byte[] { '[', ']' };
+        }
+        // Stored entries already are the wire JSON, join the mapped slices
+        ByteBuffer[] slices = new ByteBuffer[(int) (to - from + 1)];
+        int length = 1 + slices.length;
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = store.read(from + i);
+            length += slices[i].remaining();
+        }
+        ByteBuffer page = ByteBuffer.allocate(length);
+        page.put((byte) '[');
+        for (int i = 0; i < slices.length; i++) {
+            if (i > 0) {
+                page.put((byte) ',');
+            }
+            page.put(slices[i]);
+        }
+        page.put((byte) ']');
+        return page.array();
+    }
+
+    private ChatMessage at(ChatMessage[][] directory, long sequence) {
+        ChatMessage[] chunk = directory[(int) ((sequence - 1) >>> CHUNK_BITS)];
+        ChatMessage message = chunk != null ? chunk[(int) ((sequence - 1) & CHUNK_MASK)] : null;
+        // Released chunks, and messages recovered from a snapshot, live in the store only
+        return message != null ? message : decode(store.read(sequence));
+    }
+
+    /**
+     * @return the store backing this log, or null when it is heap only
+     */
+    MessageStore getStore() {
+        return store;
+    }
+
+    private static byte[] encode(ChatMessage message) {
+        return Codecs.encode(ChatMessage.class, message, Codecs.Format.JSON);
+    }
+
+    private static ChatMessage decode(ByteBuffer json) {
+        byte[] bytes = new byte[json.remaining()];
+        json.get(bytes);
+        try {
+            return ChatMessage.fromDTO(JsonSupport.reader(ChatMessageDTO.class).readValue(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.rasel.server.db;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Off-heap storage for the message bodies of one group.
+ *
+ * Every message is stored as its wire JSON (a {@link ChatMessageDTO}) in
+ * memory-mapped segment files, prefixed by its length. The first segment of a
+ * group is small and every next one doubles up to the maximum segment size,
+ * so quiet groups don't each reserve a full segment. An
+ * in-memory index maps a sequence number to its segment and offset, so a
+ * message costs 8 bytes of heap once {@link MessageLog} stops holding it as an
+ * object, and a history page is built by copying mapped slices.
+ *
+ * Appends are done under the owning {@link MessageLog}'s lock, readers are
+ * published through the log's volatile size like the log itself. The files are
+ * only forced to disk when a {@link Snapshot} references them, until then
+ * durability comes from the {@link WriteAheadLog}.
+ */
+final class MessageStore {
+
+    static final int DEFAULT_SEGMENT_BYTES = 16 << 20;
+    static final int INITIAL_SEGMENT_BYTES = 64 << 10;
+
+    private static final int INDEX_BITS = 12;
+    private static final int INDEX_SIZE = 1 << INDEX_BITS;
+    private static final int INDEX_MASK = INDEX_SIZE - 1;
+
+    private final Path directory;
+    // Size of the largest segments, the first ones are smaller
+    private final int segmentBytes;
+
+    // Mapped segments and the position index, grown under the append lock
+    private final ArrayList<MappedByteBuffer> segments = new ArrayList<>();
+    private volatile MappedByteBuffer[] segmentView = new MappedByteBuffer[0];
+    private long[][] index = new long[4][];
+    private int writeOffset;
+    // First segment that may hold unforced writes
+    private int forcedThrough;
+
+    MessageStore(Path directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    MessageStore(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Reopens a store whose first {@code count} entries are at the given
+     * positions (as returned by {@link #positions(long)}), later entries are
+     * overwritten by the next appends and unused segment files are deleted.
+     */
+    static MessageStore recover(Path directory, long[] positions, int count) throws IOException {
+        MessageStore store = new MessageStore(directory);
+        int lastSegment = count > 0 ? (int) (positions[count - 1] >>> 32) : -1;
+        for (int segment = 0; segment <= lastSegment; segment++) {
+            Path path = store.segmentPath(segment);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                store.segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            }
+        }
+        store.segmentView = store.segments.toArray(new MappedByteBuffer[0]);
+        store.forcedThrough = Math.max(lastSegment, 0);
+        if (count > 0) {
+            int offset = (int) positions[count - 1];
+            store.writeOffset = offset + 4 + store.segments.get(lastSegment).getInt(offset);
+        }
+        for (int sequence = 1; sequence <= count; sequence++) {
+            store.index(sequence, positions[sequence - 1]);
+        }
+        // Segments past the last entry only hold data that is replayed again
+        if (Files.isDirectory(directory)) {
+            try (var files = Files.list(directory)) {
+                for (Path path : files.toList()) {
+                    String name = path.getFileName().toString();
+                    if (name.endsWith(".seg") && Integer.parseInt(name.substring(0, name.length() - 4)) > lastSegment) {
+                        Files.delete(path);
+                    }
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Stores the JSON of the message with the given sequence, which must be the
+     * next one.
+     */
+    void append(long sequence, byte[] json) {
+        int needed = 4 + json.length;
+        if (segments.isEmpty() || writeOffset + needed > segments.get(segments.size() - 1).capacity()) {
+            map(Math.max(nextSegmentBytes(), needed));
+        }
+        int segment = segments.size() - 1;
+        MappedByteBuffer buffer = segments.get(segment);
+        buffer.putInt(writeOffset, json.length);
+        buffer.put(writeOffset + 4, json);
+        index(sequence, ((long) segment << 32) | writeOffset);
+        writeOffset += needed;
+    }
+
+    private void index(long sequence, long position) {
+        int slot = (int) ((sequence - 1) >>> INDEX_BITS);
+        if (slot == index.length) {
+            long[][] grown = new long[index.length * 2][];
+            System.arraycopy(index, 0, grown, 0, index.length);
+            index = grown;
+        }
+        if (index[slot] == null) {
+            index[slot] = new long[INDEX_SIZE];
+        }
+        index[slot][(int) ((sequence - 1) & INDEX_MASK)] = position;
+    }
+
+    /**
+     * Copies the positions of the first {@code count} entries, for a snapshot.
+     * The caller must have read the log's size after they were appended.
+     */
+    long[] positions(long count) {
+        long[] positions = new long[(int) count];
+        long[][] slots = index;
+        for (int i = 0; i < count; i++) {
+            positions[i] = slots[i >>> INDEX_BITS][i & INDEX_MASK];
+        }
+        return positions;
+    }
+
+    /**
+     * Writes every segment that may hold unforced entries to disk. Called by
+     * the snapshot thread only.
+     */
+    void force() {
+        MappedByteBuffer[] view = segmentView;
+        for (int segment = forcedThrough; segment < view.length; segment++) {
+            view[segment].force();
+        }
+        // The newest forced segment may still receive appends
+        forcedThrough = Math.max(0, view.length - 1);
+    }
+
+    /**
+     * Returns a read-only view of the stored JSON of a message. The caller must
+     * have read the log's size after the message was appended.
+     */
+    ByteBuffer read(long sequence) {
+        long position = index[(int) ((sequence - 1) >>> INDEX_BITS)][(int) ((sequence - 1) & INDEX_MASK)];
+        ByteBuffer segment = segmentView[(int) (position >>> 32)];
+        int offset = (int) position;
+        int length = segment.getInt(offset);
+        return segment.slice(offset + 4, length).asReadOnlyBuffer();
+    }
+
+    private int nextSegmentBytes() {
+        if (segments.isEmpty()) {
+            return Math.min(INITIAL_SEGMENT_BYTES, segmentBytes);
+        }
+        long doubled = 2L * segments.get(segments.size() - 1).capacity();
+        return (int) Math.min(doubled, segmentBytes);
+    }
+
+    private void map(int size) {
+        Path path = segmentPath(segments.size());
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping stays valid after the channel is closed
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map message segment " + path, e);
+        }
+        segmentView = segments.toArray(new MappedByteBuffer[0]);
+        writeOffset = 0;
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("%08d.seg", segment));
+    }
+}
@@ -0,0 +1,239 @@
+package com.rasel.server.db;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import com.rasel.server.logging.Log;
+
+/**
+ * Compact binary image of the database, taken while writers keep going.
+ *
+ * A snapshot records the WAL lsn read before it started, then copies users,
+ * groups with their members, and for every group the store positions of its
+ * messages (the bodies stay in the {@link MessageStore} files, which are forced
+ * to disk first). Because writers aren't stopped the copy may already contain
+ * some mutations after that lsn, so recovery replays the WAL from there and
+ * the replay skips what is already applied (see {@link WriteAheadLog}).
+ *
+ * Layout (big-endian): magic, version, lsn, users, groups, then a CRC32C of
+ * everything before it. Files are written to a temporary name and atomically
+ * renamed, so a crash never leaves a half written snapshot behind.
+ */
+final class Snapshot {
+
+    private static final int MAGIC = 0x52534E50; // "RSNP"
+    private static final int VERSION = 1;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private Snapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the managers into {@code directory}.
+     *
+     * @param lsn the last WAL lsn the snapshot is guaranteed to contain
+     * @return the snapshot file
+     */
+    static Path write(Path directory, long lsn, UserManager users, GroupManager groups,
+            ChatMessageManager messages) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(String.format("%s%020d%s", PREFIX, lsn, SUFFIX));
+        Path temp = directory.resolve(file.getFileName() + ".tmp");
+        CRC32C checksum = new CRC32C();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16), checksum))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lsn);
+
+            List<User> userList = users.getAllUsers();
+            out.writeInt(userList.size());
+            for (User user : userList) {
+                writeString(out, user.getUsername());
+                writeString(out, user.getPassword());
+            }
+
+            List<Group> groupList = groups.getAllGroups();
+            out.writeInt(groupList.size());
+            for (Group group : groupList) {
+                writeString(out, group.getName());
+                writeString(out, group.getAdmin().getUsername());
+                List<User> members = new ArrayList<>(group.getMembers());
+                out.writeInt(members.size());
+                for (User member : members) {
+                    writeString(out, member.getUsername());
+                }
+                MessageLog log = messages.findLog(group);
+                long[] positions = new long[0];
+                if (log != null && log.getStore() != null) {
+                    positions = log.getStore().positions(log.size());
+                    // The snapshot points into the segments, they must be on disk first
+                    log.getStore().force();
+                }
+                out.writeInt(positions.length);
+                for (long position : positions) {
+                    out.writeLong(position);
+                }
+            }
+            out.flush();
+            out.writeInt((int) checksum.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * Loads the newest readable snapshot in {@code directory} into the (empty)
+     * managers, falling back to older ones if the newest is damaged.
+     *
+     * @return the lsn of the loaded snapshot, or 0 if there is none
+     */
+    static long load(Path directory, UserManager users, GroupManager groups, ChatMessageManager messages)
+            throws IOException {
+        List<Path> snapshots = list(directory);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path file = snapshots.get(i);
+            try {
+                return read(file, users, groups, messages);
+            } catch (IOException e) {
+                if (i == 0) {
+                    throw e;
+                }
+                // Nothing has been restored yet when the checksum fails
+                Log.warn("Skipping unreadable snapshot %s: %s", file, e.getMessage());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Deletes all but the newest {@code keep} snapshots, and temporary files
+     * left by a crash during a snapshot.
+     *
+     * @return the lsn of the oldest kept snapshot, the WAL is needed from there
+     *         on; 0 if there is none
+     */
+    static long prune(Path directory, int keep) throws IOException {
+        List<Path> snapshots = list(directory);
+        for (int i = 0; i < snapshots.size() - keep; i++) {
+            Files.delete(snapshots.get(i));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(p -> p.getFileName().toString().endsWith(".tmp")).toList()) {
+                Files.delete(file);
+            }
+        }
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        String oldest = snapshots.get(Math.max(0, snapshots.size() - keep)).getFileName().toString();
+        return Long.parseLong(oldest.substring(PREFIX.length(), oldest.length() - SUFFIX.length()));
+    }
+
+    private static long read(Path file, UserManager users, GroupManager groups, ChatMessageManager messages)
+            throws IOException {
+        // Verify the whole file before touching the managers
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 4) {
+            throw new IOException("truncated snapshot");
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes, 0, bytes.length - 4);
+        if ((int) checksum.getValue() != ByteBuffer.wrap(bytes).getInt(bytes.length - 4)) {
+            throw new IOException("checksum mismatch");
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(bytes, 0, bytes.length - 4);
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("not a snapshot");
+            }
+            long lsn = in.getLong();
+
+            int userCount = in.getInt();
+            for (int i = 0; i < userCount; i++) {
+                users.restoreUser(readString(in), readString(in));
+            }
+
+            int groupCount = in.getInt();
+            for (int i = 0; i < groupCount; i++) {
+                String name = readString(in);
+                User admin = users.getUser(readString(in));
+                int memberCount = in.getInt();
+                List<User> members = new ArrayList<>(memberCount);
+                for (int m = 0; m < memberCount; m++) {
+                    User member = users.getUser(readString(in));
+                    if (member != null) {
+                        members.add(member);
+                    }
+                }
+                long[] positions = new long[in.getInt()];
+                in.asLongBuffer().get(positions);
+                in.position(in.position() + positions.length * 8);
+                if (admin == null) {
+                    Log.warn("Skipping snapshot group %s without admin", name);
+                    continue;
+                }
+                groups.restoreGroup(name, admin, members);
+                messages.restoreLog(groups.getGroup(name), positions);
+            }
+            return lsn;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("malformed snapshot: " + e.getMessage());
+        }
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
@@ -21,6 +21,17 @@ public class User {
         this.password = hashPassword(password);
     }
 
+    private User(String username) {
+        this.username = username;
+    }
+
+    // Restore a persisted user, the password is already hashed
+    static User restore(String username, String passwordHash) {
+        User user = new User(username);
+        user.password = passwordHash;
+        return user;
+    }
+
     public String getUsername() {
         return username;
     }
@@ -1,25 +1,44 @@
 package com.rasel.server.db;
 
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Manage users in-memory for now.
+ *
+ * Users are indexed by username (which is also their id) in a concurrent map,
+ * so lookups during login are O(1) and safe to run from any handler thread.
+ * The JSON list of all users is cached until the next signup.
  */
 public class UserManager {
 
-    private final ArrayList<User> users = new ArrayList<>();
+    private final ConcurrentMap<String, User> users = new ConcurrentHashMap<>();
+
+    private final VersionedPayload usersView = new VersionedPayload();
+
+    private volatile Journal journal = Journal.NONE;
+
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
 
     /**
-     * Add user to list; ensure username is unique.
+     * Add user; ensure username is unique. Two concurrent signups for the
+     * same username can't both succeed.
      */
     public User createUser(String username, String password) throws Exception {
-        for (User user : users) {
-            if (user.getUsername().equals(username)) {
-                throw new Exception("User already exists");
-            }
+        if (username == null) {
+            throw new Exception("Username is required");
         }
         User newUser = new User(username, password);
-        users.add(newUser);
+        User stored = users.putIfAbsent(username, newUser);
+        if (stored != null) {
+            throw new Exception("User already exists");
+        }
+        // journaled once visible, so a snapshot taken at its lsn contains it
+        journal.userCreated(newUser);
+        usersView.bump();
         return newUser;
     }
 
@@ -27,33 +46,55 @@ public class UserManager {
      * Return existing user or create a new one.
      */
     public User getOrCreateUser(String username, String password) {
-        for (User u : users) {
-            if (u.getUsername().equals(username)) {
-                return u;
-            }
-        }
-        try {
-            return createUser(username, password);
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (username == null) {
             return null;
         }
+        User existing = users.get(username);
+        if (existing != null) {
+            return existing;
+        }
+        User created = new User(username, password);
+        User stored = users.putIfAbsent(username, created);
+        if (stored != null) {
+            return stored;
+        }
+        // journaled once visible, so a snapshot taken at its lsn contains it
+        journal.userCreated(created);
+        usersView.bump();
+        return created;
+    }
+
+    /**
+     * Re-insert a persisted user, used while recovering the database.
+     */
+    void restoreUser(String username, String passwordHash) throws Exception {
+        if (username == null) {
+            throw new Exception("Username is required");
+        }
+        users.putIfAbsent(username, User.restore(username, passwordHash));
+        usersView.bump();
     }
 
     /**
      * Get a user by username, or null if not found.
      */
     public User getUser(String username) {
-        for (User u : users) {
-            if (u.getUsername().equals(username)) {
-                return u;
-            }
-        }
-        return null;
+        return username != null ? users.get(username) : null;
+    }
+
+    /**
+     * @return a read-only snapshot of all users, in no particular order
+     */
+    public List<User> getAllUsers() {
+        return List.copyOf(users.values());
     }
 
-    public ArrayList<User> getAllUsers() {
-        return users;
+    /**
+     * @return the UTF-8 JSON array of all users, cached until a user is added,
+     *         must not be modified
+     */
+    public byte[] getAllUsersJson() {
+        return usersView.get(() -> Codecs.encodeAll(User.class, users.values(), Codecs.Format.JSON));
     }
 
     public int getUserCount() {
@@ -61,9 +102,6 @@ public class UserManager {
     }
 
     public User findByUsername(String username) {
-        for (User u : users) {
-            if (u.getUsername().equals(username)) return u;
-        }
-        return null;
+        return getUser(username);
     }
 }
@@ -0,0 +1,55 @@
+package com.rasel.server.db;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A UTF-8 encoded payload cached together with the version it was encoded
+ * at, ready to be framed without another encoding pass.
+ *
+ * The owning manager bumps the version after every mutation that changes what
+ * the payload would contain. {@link #get(Supplier)} returns the cached
+ * encoding while it is still at the current version and re-encodes otherwise.
+ * The version is read before encoding, so an encoding that races with a
+ * mutation is stamped with the older version and replaced on the next call.
+ */
+public final class VersionedPayload {
+
+    private record Encoded(long version, byte[] payload) {
+    }
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Encoded encoded;
+
+    /**
+     * @return the current version, it only increases
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Invalidates the cached payload, call after the mutation is visible.
+     *
+     * @return the new version
+     */
+    long bump() {
+        return version.incrementAndGet();
+    }
+
+    /**
+     * Returns the cached payload, or encodes and caches it if it is stale. The
+     * array is shared by every caller and must not be modified.
+     */
+    byte[] get(Supplier<byte[]> encoder) {
+        long current = version.get();
+        Encoded cached = encoded;
+        if (cached != null && cached.version == current) {
+            return cached.payload;
+        }
+        byte[] payload = encoder.get();
+        encoded = new Encoded(current, payload);
+        return payload;
+    }
+}
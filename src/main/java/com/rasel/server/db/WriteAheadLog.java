@@ -0,0 +1,549 @@
+package com.rasel.server.db;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import com.rasel.server.logging.Log;
+
+/**
+ * Segmented, append-only binary write-ahead log of database mutations.
+ *
+ * Appending only encodes the record and queues it, a single writer thread
+ * writes everything queued since its last pass with one gathering write and
+ * one fsync (group commit), so callers never wait for the disk and the number
+ * of fsyncs is bounded by the disk, not by the message rate. {@link #sync()}
+ * waits until everything appended so far is durable.
+ *
+ * Record layout (big-endian):
+ *
+ * <pre>
+ * i32 length   bytes after the checksum (lsn + type + payload)
+ * i32 crc32c   of the bytes after the checksum
+ * i64 lsn      log sequence number, consecutive from 1
+ * u8  type     {@link Type} ordinal
+ * ..  payload  fields, strings are i32 length (-1 for null) + UTF-8 bytes
+ * </pre>
+ *
+ * Segments are named after the lsn of their first record and rolled once they
+ * reach the segment size. A torn record at the end of the newest segment (a
+ * crash mid-write) ends the replay and is truncated away.
+ *
+ * Replay is idempotent, records whose effect is already present (e.g. from a
+ * {@link Snapshot} taken while writers kept going) are skipped.
+ */
+final class WriteAheadLog implements Journal, AutoCloseable {
+
+    static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER = 4 + 4 + 8 + 1;
+    private static final int MAX_RECORD_BYTES = 16 << 20;
+
+    /**
+     * Record types, the ordinal is written to disk so values are append-only.
+     */
+    enum Type {
+        USER_CREATED,
+        GROUP_CREATED,
+        MEMBER_ADDED,
+        MEMBER_REMOVED,
+        ADMIN_TRANSFERRED,
+        MESSAGE_APPENDED
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingAvailable = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private ArrayList<ByteBuffer> pending = new ArrayList<>();
+    private long nextLsn = 1;
+    private long durableLsn;
+    private boolean closed;
+    private IOException failure;
+
+    // Owned by the writer thread once started
+    private FileChannel segment;
+    private long segmentSize;
+    private Thread writer;
+    private volatile boolean rollRequested;
+
+    WriteAheadLog(Path directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    WriteAheadLog(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Replays every record with an lsn greater than {@code afterLsn} into the
+     * given managers, which must not be journaling yet. Must be called once,
+     * before {@link #start()}.
+     *
+     * @return the number of records applied
+     */
+    long replay(long afterLsn, UserManager users, GroupManager groups, ChatMessageManager messages)
+            throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = segments();
+        long applied = 0;
+        long lastLsn = afterLsn;
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            boolean newest = i == segments.size() - 1;
+            if (!newest && firstLsn(segments.get(i + 1)) <= afterLsn + 1) {
+                // Covered by the snapshot, only its last lsn matters
+                lastLsn = Math.max(lastLsn, firstLsn(segments.get(i + 1)) - 1);
+                continue;
+            }
+            long validBytes = 0;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                while (true) {
+                    byte[] record = readRecord(in);
+                    if (record == null) {
+                        break;
+                    }
+                    ByteBuffer buf = ByteBuffer.wrap(record);
+                    long lsn = buf.getLong();
+                    if (lsn > afterLsn) {
+                        apply(lsn, buf, users, groups, messages);
+                        applied++;
+                    }
+                    lastLsn = Math.max(lastLsn, lsn);
+                    validBytes += 8 + record.length;
+                }
+            } catch (CorruptRecordException e) {
+                if (!newest) {
+                    throw new IOException("Corrupt WAL segment " + path + ": " + e.getMessage());
+                }
+                Log.warn("Truncating torn WAL tail in %s at byte %d (%s)", path, validBytes, e.getMessage());
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                    channel.force(true);
+                }
+            }
+        }
+        nextLsn = lastLsn + 1;
+        durableLsn = lastLsn;
+        return applied;
+    }
+
+    /**
+     * Opens a new segment and starts the group-commit writer.
+     */
+    void start() throws IOException {
+        Files.createDirectories(directory);
+        openSegment(nextLsn);
+        writer = Thread.ofPlatform().name("wal-writer").daemon(true).start(this::writeLoop);
+    }
+
+    /**
+     * @return the lsn of the last appended record (0 if none)
+     */
+    long lastLsn() {
+        lock.lock();
+        try {
+            return nextLsn - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes the writer start a new segment with its next batch, so records
+     * appended after a snapshot don't share a segment with the ones it covers.
+     */
+    void requestRoll() {
+        rollRequested = true;
+    }
+
+    /**
+     * Blocks until every record appended before the call is on disk.
+     */
+    void sync() throws IOException {
+        lock.lock();
+        try {
+            long target = nextLsn - 1;
+            while (durableLsn < target && failure == null && writer != null && writer.isAlive()) {
+                durable.awaitNanos(TimeUnit.MILLISECONDS.toNanos(100));
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes what is queued, fsyncs and stops the writer.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pendingAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (segment != null) {
+            segment.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Deletes segments whose records all have an lsn up to {@code lsn}, they
+     * are covered by a snapshot. The active segment is never deleted.
+     *
+     * @return the number of deleted segments
+     */
+    int deleteSegmentsThrough(long lsn) throws IOException {
+        List<Path> segments = segments();
+        int deleted = 0;
+        // A segment is fully covered when the next one starts at or before lsn + 1
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstLsn(segments.get(i + 1)) <= lsn + 1) {
+                Files.delete(segments.get(i));
+                deleted++;
+            } else {
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    // --- Journal ---
+
+    @Override
+    public void userCreated(User user) {
+        append(Type.USER_CREATED, user.getUsername(), user.getPassword());
+    }
+
+    @Override
+    public void groupCreated(Group group) {
+        append(Type.GROUP_CREATED, group.getName(), group.getAdmin().getUsername());
+    }
+
+    @Override
+    public void memberAdded(Group group, User user) {
+        append(Type.MEMBER_ADDED, group.getName(), user.getUsername());
+    }
+
+    @Override
+    public void memberRemoved(Group group, User user) {
+        append(Type.MEMBER_REMOVED, group.getName(), user.getUsername());
+    }
+
+    @Override
+    public void adminTransferred(Group group, User admin) {
+        append(Type.ADMIN_TRANSFERRED, group.getName(), admin.getUsername());
+    }
+
+    @Override
+    public void messageAppended(ChatMessage message) {
+        append(Type.MESSAGE_APPENDED,
+                message.getGroup().getName(),
+                message.getSender() != null ? message.getSender().getUsername() : null,
+                message.getTimestamp(),
+                message.getContent(),
+                Long.toString(message.getSequence()));
+    }
+
+    // --- encoding ---
+
+    private void append(Type type, String... fields) {
+        byte[][] encoded = new byte[fields.length][];
+        int size = RECORD_HEADER;
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = fields[i] != null ? fields[i].getBytes(StandardCharsets.UTF_8) : null;
+            size += 4 + (encoded[i] != null ? encoded[i].length : 0);
+        }
+        ByteBuffer record = ByteBuffer.allocate(size);
+        record.putInt(size - 8).putInt(0).putLong(0).put((byte) type.ordinal());
+        for (byte[] field : encoded) {
+            if (field == null) {
+                record.putInt(-1);
+            } else {
+                record.putInt(field.length).put(field);
+            }
+        }
+        record.flip();
+
+        lock.lock();
+        try {
+            if (closed) {
+                Log.warn("WAL closed, dropping %s record", type);
+                return;
+            }
+            // The lsn is assigned in queue order, the checksum is left to the writer
+            record.putLong(8, nextLsn++);
+            pending.add(record);
+            pendingAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void apply(long lsn, ByteBuffer buf, UserManager users, GroupManager groups,
+            ChatMessageManager messages) {
+        int ordinal = buf.get() & 0xFF;
+        if (ordinal >= Type.values().length) {
+            Log.warn("Skipping WAL record lsn=%d with unknown type %d", lsn, ordinal);
+            return;
+        }
+        Type type = Type.values()[ordinal];
+        try {
+            switch (type) {
+                case USER_CREATED ->
+                    users.restoreUser(readString(buf), readString(buf));
+                case GROUP_CREATED -> {
+                    String name = readString(buf);
+                    User admin = requireUser(users, readString(buf));
+                    if (groups.getGroup(name) == null) {
+                        groups.createGroup(name, admin);
+                    }
+                }
+                case MEMBER_ADDED -> {
+                    Group group = requireGroup(groups, readString(buf));
+                    User user = requireUser(users, readString(buf));
+                    if (!group.isMember(user)) {
+                        groups.addMember(group.getName(), user);
+                    }
+                }
+                case MEMBER_REMOVED -> {
+                    Group group = requireGroup(groups, readString(buf));
+                    User user = requireUser(users, readString(buf));
+                    if (group.isMember(user)) {
+                        groups.removeMember(group.getName(), user);
+                    }
+                }
+                case ADMIN_TRANSFERRED ->
+                    groups.transferAdmin(readString(buf), requireUser(users, readString(buf)));
+                case MESSAGE_APPENDED -> {
+                    Group group = requireGroup(groups, readString(buf));
+                    User sender = users.getUser(readString(buf));
+                    String timestamp = readString(buf);
+                    String content = readString(buf);
+                    long sequence = buf.hasRemaining() ? Long.parseLong(readString(buf)) : 0;
+                    if (sequence == 0 || sequence > messages.getLog(group).size()) {
+                        messages.addMessage(new ChatMessage(sender, content, group, timestamp));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.warn("Skipping WAL record lsn=%d type=%s: %s", lsn, type, e.getMessage());
+        }
+    }
+
+    private static User requireUser(UserManager users, String username) throws Exception {
+        User user = users.getUser(username);
+        if (user == null) {
+            throw new Exception("User not found: " + username);
+        }
+        return user;
+    }
+
+    private static Group requireGroup(GroupManager groups, String name) throws Exception {
+        Group group = groups.getGroup(name);
+        if (group == null) {
+            throw new Exception("Group not found: " + name);
+        }
+        return group;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return value;
+    }
+
+    /**
+     * Reads one record and verifies its checksum.
+     *
+     * @return lsn + type + payload, or null at a clean end of the segment
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < RECORD_HEADER - 8 || length > MAX_RECORD_BYTES) {
+            throw new CorruptRecordException("bad record length " + length);
+        }
+        byte[] record = new byte[length];
+        int crc;
+        try {
+            crc = in.readInt();
+            in.readFully(record);
+        } catch (EOFException e) {
+            throw new CorruptRecordException("truncated record");
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(record);
+        if ((int) checksum.getValue() != crc) {
+            throw new CorruptRecordException("checksum mismatch");
+        }
+        return record;
+    }
+
+    // --- writer ---
+
+    private void writeLoop() {
+        while (true) {
+            ArrayList<ByteBuffer> batch;
+            long batchLsn;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    pendingAvailable.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                batchLsn = nextLsn - 1;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                writeBatch(batch);
+                segment.force(false);
+            } catch (IOException e) {
+                Log.error("WAL write failed, persistence is disabled: %s", e.getMessage());
+                lock.lock();
+                try {
+                    failure = e;
+                    closed = true;
+                    pending.clear();
+                    durable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                durableLsn = batchLsn;
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writeBatch(List<ByteBuffer> batch) throws IOException {
+        CRC32C checksum = new CRC32C();
+        int from = 0;
+        long runBytes = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            ByteBuffer record = batch.get(i);
+            checksum.reset();
+            checksum.update(record.duplicate().position(8));
+            record.putInt(4, (int) checksum.getValue());
+
+            boolean roll = i == 0 && rollRequested;
+            if (roll) {
+                rollRequested = false;
+            }
+            if (segmentSize + runBytes > 0 && (roll || segmentSize + runBytes + record.remaining() > segmentBytes)) {
+                write(batch.subList(from, i));
+                segment.force(false);
+                segment.close();
+                openSegment(record.getLong(8));
+                from = i;
+                runBytes = 0;
+            }
+            runBytes += record.remaining();
+        }
+        write(batch.subList(from, batch.size()));
+    }
+
+    private void write(List<ByteBuffer> records) throws IOException {
+        ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        segmentSize += remaining;
+        while (remaining > 0) {
+            remaining -= segment.write(buffers);
+        }
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmentSize = segment.size();
+    }
+
+    private List<Path> segments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class CorruptRecordException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CorruptRecordException(String message) {
+            super(message);
+        }
+    }
+}
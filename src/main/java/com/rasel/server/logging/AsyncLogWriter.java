@@ -0,0 +1,121 @@
+package com.rasel.server.logging;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background writer of the asynchronous {@link Log} mode.
+ *
+ * Logging threads only capture a {@link LogEvent} and offer it to a
+ * {@link RingBuffer}; a single "log-writer" thread hands them to a
+ * {@link LogSink} in batches, flushing once per batch. The buffer is bounded,
+ * so a slow sink never blocks the logging threads: when it is full the event
+ * is dropped and counted, the writer reports the count once it catches up.
+ */
+final class AsyncLogWriter implements Runnable {
+
+    static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private static final int BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final RingBuffer<LogEvent> ring;
+    private final LogSink sink;
+    private final Thread thread;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running = true;
+    private volatile boolean parked;
+
+    AsyncLogWriter(LogSink sink, int capacity) {
+        this.ring = new RingBuffer<>(capacity);
+        this.sink = sink;
+        this.thread = Thread.ofPlatform().name("log-writer").daemon(true).unstarted(this);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Hands an event to the writer without blocking.
+     *
+     * @return false if the buffer was full and the event was dropped
+     */
+    boolean publish(LogEvent event) {
+        if (!ring.offer(event)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Writes what is buffered and stops the writer thread.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            int count = 0;
+            LogEvent event;
+            while (count < BATCH && (event = ring.poll()) != null) {
+                write(event);
+                count++;
+            }
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                write(new LogEvent(System.currentTimeMillis(), Log.Level.WARN, Thread.currentThread().getName(),
+                        null, "Log buffer full, dropped %d events", new Object[] { lost }, null, null));
+            }
+            if (count > 0 || lost > 0) {
+                try {
+                    sink.flush();
+                } catch (IOException e) {
+                    System.err.println("Log write failed: " + e.getMessage());
+                }
+                continue;
+            }
+            if (!running) {
+                // A producer may have claimed a slot that isn't published yet
+                if (ring.isEmpty()) {
+                    break;
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            parked = true;
+            if (ring.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            parked = false;
+        }
+        try {
+            sink.close();
+        } catch (IOException e) {
+            System.err.println("Log close failed: " + e.getMessage());
+        }
+    }
+
+    private void write(LogEvent event) {
+        try {
+            sink.write(event);
+        } catch (IOException e) {
+            System.err.println("Log write failed: " + e.getMessage());
+        }
+    }
+}
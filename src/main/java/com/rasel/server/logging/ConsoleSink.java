@@ -0,0 +1,30 @@
+package com.rasel.server.logging;
+
+/**
+ * Writes the human readable text lines of {@link Log} to stdout, warnings and
+ * errors to stderr, one print per batch.
+ */
+public final class ConsoleSink implements LogSink {
+
+    private final StringBuilder out = new StringBuilder(1 << 16);
+    private final StringBuilder err = new StringBuilder(1 << 12);
+
+    @Override
+    public void write(LogEvent event) {
+        Log.format(event, event.level.ordinal() >= Log.Level.WARN.ordinal() ? err : out, Log.USE_COLOR);
+    }
+
+    @Override
+    public void flush() {
+        if (out.length() > 0) {
+            System.out.print(out);
+            System.out.flush();
+            out.setLength(0);
+        }
+        if (err.length() > 0) {
+            System.err.print(err);
+            System.err.flush();
+            err.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.rasel.server.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.rasel.server.db.Codecs;
+import com.rasel.server.db.JsonSupport;
+
+/**
+ * Appends log events to a file as text, JSON lines or binary records, see
+ * {@link LogFormat}.
+ *
+ * The file is rotated after a batch once it reached {@code maxBytes} or was
+ * opened {@code rotateInterval} ago: it is renamed to
+ * {@code <name>.<yyyyMMdd-HHmmss>} and a new one is started, only the newest
+ * {@code keep} rotated files are kept. Zero disables either limit.
+ *
+ * A binary file starts with the bytes {@code RLOG} and the format version 1,
+ * then holds one record per event, prefixed with its length as a varint:
+ * the time in epoch milliseconds (varint), the level ordinal (byte), thread,
+ * caller and message template (strings), the argument count (varint) and
+ * values, the field count (varint) and key (string) / value pairs, and the
+ * stack trace (string). Strings and varints are encoded like
+ * {@link Codecs#writeString}; a value is a tag byte followed by nothing (0,
+ * null), a zigzag varint (1, integral number), 8 bytes (2, floating point
+ * number), a byte (3, boolean) or a string (4, anything else).
+ */
+public final class FileSink implements LogSink {
+
+    private static final byte[] BINARY_HEADER = { 'R', 'L', 'O', 'G', 1 };
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss", Locale.ROOT);
+
+    private final Path file;
+    private final LogFormat format;
+    private final long maxBytes;
+    private final long rotateMillis;
+    private final int keep;
+
+    private final StringBuilder line = new StringBuilder(256);
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordData = new DataOutputStream(record);
+
+    private CountingOutputStream out;
+    private Writer text;
+    private JsonGenerator json;
+    private DataOutputStream data;
+    private long openedAt;
+
+    public FileSink(Path file, LogFormat format) throws IOException {
+        this(file, format, 0, Duration.ZERO, 0);
+    }
+
+    public FileSink(Path file, LogFormat format, long maxBytes, Duration rotateInterval, int keep)
+            throws IOException {
+        this.file = file.toAbsolutePath();
+        this.format = format;
+        this.maxBytes = Math.max(0, maxBytes);
+        this.rotateMillis = Math.max(0, rotateInterval.toMillis());
+        this.keep = Math.max(0, keep);
+        Path parent = this.file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    @Override
+    public void write(LogEvent event) throws IOException {
+        switch (format) {
+            case TEXT -> {
+                line.setLength(0);
+                Log.format(event, line, false);
+                text.append(line);
+            }
+            case JSON -> writeJson(event);
+            case BINARY -> writeBinary(event);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        switch (format) {
+            case TEXT -> text.flush();
+            case JSON -> json.flush();
+            case BINARY -> data.flush();
+        }
+        long written = out.count - (format == LogFormat.BINARY ? BINARY_HEADER.length : 0);
+        if (written > 0 && ((maxBytes > 0 && out.count >= maxBytes)
+                || (rotateMillis > 0 && System.currentTimeMillis() - openedAt >= rotateMillis))) {
+            rotate();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeFile();
+    }
+
+    private void open() throws IOException {
+        long size = Files.exists(file) ? Files.size(file) : 0;
+        out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true), 1 << 16),
+                size);
+        openedAt = System.currentTimeMillis();
+        switch (format) {
+            case TEXT -> text = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            case JSON -> {
+                json = JsonSupport.MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+                // Lines are ended explicitly, no separator between root values
+                json.setRootValueSeparator(null);
+            }
+            case BINARY -> {
+                data = new DataOutputStream(out);
+                if (size == 0) {
+                    data.write(BINARY_HEADER);
+                }
+            }
+        }
+    }
+
+    private void closeFile() throws IOException {
+        switch (format) {
+            case TEXT -> text.close();
+            case JSON -> json.close();
+            case BINARY -> data.close();
+        }
+    }
+
+    private void rotate() throws IOException {
+        closeFile();
+        String name = file.getFileName().toString();
+        String base = name + "." + LocalDateTime.now().format(SUFFIX);
+        Path target = file.resolveSibling(base);
+        for (int i = 1; Files.exists(target); i++) {
+            target = file.resolveSibling(base + "-" + i);
+        }
+        Files.move(file, target);
+        prune(name);
+        open();
+    }
+
+    private void prune(String name) throws IOException {
+        if (keep == 0) {
+            return;
+        }
+        List<Path> rotated = new ArrayList<>();
+        try (Stream<Path> siblings = Files.list(file.getParent())) {
+            siblings.filter(path -> path.getFileName().toString().startsWith(name + "."))
+                    .forEach(rotated::add);
+        }
+        // The suffix sorts by time, newest first
+        rotated.sort(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed());
+        for (int i = keep; i < rotated.size(); i++) {
+            Files.deleteIfExists(rotated.get(i));
+        }
+    }
+
+    private void writeJson(LogEvent event) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("ts", event.timeMillis);
+        json.writeStringField("level", event.level.name());
+        json.writeStringField("thread", event.thread);
+        if (event.caller != null) {
+            json.writeStringField("caller", event.caller);
+        }
+        json.writeStringField("msg", event.getFormattedMessage());
+        for (int i = 0; i < event.getFieldCount(); i++) {
+            json.writeFieldName(event.getFieldKey(i));
+            writeJsonValue(event.getFieldValue(i));
+        }
+        if (event.throwable != null) {
+            json.writeStringField("error", Log.stackTrace(event.throwable));
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private void writeJsonValue(Object value) throws IOException {
+        if (value == null) {
+            json.writeNull();
+        } else if (isIntegral(value)) {
+            json.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            json.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Boolean bool) {
+            json.writeBoolean(bool);
+        } else {
+            json.writeString(String.valueOf(value));
+        }
+    }
+
+    private void writeBinary(LogEvent event) throws IOException {
+        record.reset();
+        Codecs.writeVarLong(recordData, event.timeMillis);
+        recordData.writeByte(event.level.ordinal());
+        Codecs.writeString(recordData, event.thread);
+        Codecs.writeString(recordData, event.caller);
+        Codecs.writeString(recordData, event.message);
+        Codecs.writeVarLong(recordData, event.getArgCount());
+        for (int i = 0; i < event.getArgCount(); i++) {
+            writeBinaryValue(event.getArg(i));
+        }
+        Codecs.writeVarLong(recordData, event.getFieldCount());
+        for (int i = 0; i < event.getFieldCount(); i++) {
+            Codecs.writeString(recordData, event.getFieldKey(i));
+            writeBinaryValue(event.getFieldValue(i));
+        }
+        Codecs.writeString(recordData, event.throwable != null ? Log.stackTrace(event.throwable) : null);
+        Codecs.writeVarLong(data, record.size());
+        record.writeTo(data);
+    }
+
+    private void writeBinaryValue(Object value) throws IOException {
+        if (value == null) {
+            recordData.writeByte(0);
+        } else if (isIntegral(value)) {
+            long number = ((Number) value).longValue();
+            recordData.writeByte(1);
+            Codecs.writeVarLong(recordData, (number << 1) ^ (number >> 63));
+        } else if (value instanceof Double || value instanceof Float) {
+            recordData.writeByte(2);
+            recordData.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean bool) {
+            recordData.writeByte(3);
+            recordData.writeBoolean(bool);
+        } else {
+            recordData.writeByte(4);
+            Codecs.writeString(recordData, String.valueOf(value));
+        }
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    /**
+     * Counts the bytes passed to the file, including those still buffered.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(OutputStream out, long count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package com.rasel.server.logging;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 
@@ -16,6 +23,23 @@ import java.util.Locale;
  * level via setLevel or LOG_LEVEL env (ERROR|WARN|INFO|DEBUG|TRACE) -
  * Timestamp, thread, caller class, and colored output (disabled if NO_COLOR env
  * is set)
+ *
+ * Calls below the minimum level return before anything is formatted or looked
+ * up. By default a line is formatted and printed on the calling thread; in
+ * asynchronous mode ({@link #startAsync(LogSink)}, or LOG_ASYNC=true with an
+ * optional LOG_FILE) the call only captures the event into a bounded lock-free
+ * ring buffer and a background writer hands it to a {@link LogSink} in
+ * batches. Arguments are then formatted later, so anything but strings,
+ * numbers, booleans, characters and enums is converted to its string form
+ * when logged. Caller lookup walks at most a few frames and can be turned off
+ * with LOG_CALLER=off.
+ *
+ * {@link #event(Level, String, Object...)} logs key/value fields next to the
+ * message, e.g. Log.event(Level.INFO, "Message delivered", "user", name,
+ * "latencyMicros", micros). Sinks keep them apart: " key=value" in text,
+ * properties in JSON lines and typed values in binary records. LOG_FORMAT
+ * (text|json|binary), LOG_ROTATE_BYTES, LOG_ROTATE_SECONDS and LOG_KEEP
+ * configure the LOG_FILE sink.
  */
 public final class Log {
 
@@ -24,8 +48,45 @@ public final class Log {
     }
 
     private static volatile Level minLevel = resolveInitialLevel();
-    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS", Locale.ROOT);
-    private static final boolean USE_COLOR = System.getenv("NO_COLOR") == null;
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.ROOT);
+    static final boolean USE_COLOR = System.getenv("NO_COLOR") == null;
+
+    // Frames walked to find the caller: the public wrapper, log, then the caller
+    private static final int MAX_CALLER_DEPTH = 8;
+    private static final StackWalker WALKER = StackWalker.getInstance();
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // The formatted date and time of the last logged second, lines in the same
+    // second only append the milliseconds
+    private record Second(long epochSecond, String text) {
+    }
+
+    private static volatile Second lastSecond = new Second(Long.MIN_VALUE, "");
+
+    private static volatile boolean callerLookup = !"off".equalsIgnoreCase(System.getenv("LOG_CALLER"));
+    private static volatile AsyncLogWriter async;
+
+    // Rotated files kept when rotation is configured without LOG_KEEP
+    private static final int DEFAULT_KEEP = 10;
+
+    static {
+        if ("true".equalsIgnoreCase(System.getenv("LOG_ASYNC"))) {
+            String file = System.getenv("LOG_FILE");
+            try {
+                if (file != null && !file.isBlank()) {
+                    startAsync(new FileSink(Path.of(file),
+                            LogFormat.parse(System.getenv("LOG_FORMAT"), LogFormat.TEXT),
+                            parseLong(System.getenv("LOG_ROTATE_BYTES")),
+                            Duration.ofSeconds(parseLong(System.getenv("LOG_ROTATE_SECONDS"))),
+                            (int) Math.max(0, parseLong(System.getenv("LOG_KEEP"), DEFAULT_KEEP))));
+                } else {
+                    startAsync(new ConsoleSink());
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to start asynchronous logging: " + e.getMessage());
+            }
+        }
+    }
 
     private Log() {
     }
@@ -40,6 +101,52 @@ public final class Log {
         return minLevel;
     }
 
+    /**
+     * Switch to asynchronous logging, appending text lines to {@code file} or
+     * writing to the console when null. Replaces a running asynchronous
+     * writer.
+     */
+    public static void startAsync(Path file) throws IOException {
+        startAsync(file != null ? new FileSink(file, LogFormat.TEXT) : new ConsoleSink());
+    }
+
+    /**
+     * Switch to asynchronous logging into {@code sink}, which is closed by
+     * {@link #stopAsync()}. Replaces a running asynchronous writer.
+     */
+    public static synchronized void startAsync(LogSink sink) {
+        AsyncLogWriter writer = new AsyncLogWriter(sink, AsyncLogWriter.DEFAULT_CAPACITY);
+        writer.start();
+        AsyncLogWriter previous = async;
+        async = writer;
+        if (previous != null) {
+            previous.stop();
+        }
+    }
+
+    /**
+     * Write out buffered events and switch back to synchronous logging, call
+     * on shutdown.
+     */
+    public static synchronized void stopAsync() {
+        AsyncLogWriter writer = async;
+        if (writer != null) {
+            async = null;
+            writer.stop();
+        }
+    }
+
+    public static boolean isAsync() {
+        return async != null;
+    }
+
+    /**
+     * Enable or disable looking up the calling class and method for each line.
+     */
+    public static void setCallerLookup(boolean enabled) {
+        callerLookup = enabled;
+    }
+
     public static void trace(String msg, Object... args) {
         log(Level.TRACE, null, msg, args);
     }
@@ -80,39 +187,129 @@ public final class Log {
         log(Level.ERROR, t, msg, args);
     }
 
+    /**
+     * Log {@code msg} as is with key/value fields, given as alternating keys
+     * and values.
+     */
+    public static void event(Level level, String msg, Object... keyValues) {
+        if (level.ordinal() >= minLevel.ordinal()) {
+            publish(level, null, msg, null, keyValues);
+        }
+    }
+
+    /**
+     * Like {@link #event(Level, String, Object...)} with a stack trace.
+     */
+    public static void event(Level level, String msg, Throwable t, Object... keyValues) {
+        if (level.ordinal() >= minLevel.ordinal()) {
+            publish(level, t, msg, null, keyValues);
+        }
+    }
+
     private static void log(Level level, Throwable t, String msg, Object... args) {
         if (level.ordinal() < minLevel.ordinal()) {
             return;
         }
+        publish(level, t, msg, args, null);
+    }
+
+    private static void publish(Level level, Throwable t, String msg, Object[] args, Object[] fields) {
+        LogEvent event = new LogEvent(
+                System.currentTimeMillis(),
+                level,
+                Thread.currentThread().getName(),
+                callerLookup ? findCaller() : null,
+                msg,
+                args,
+                fields,
+                t);
+        AsyncLogWriter writer = async;
+        boolean important = level.ordinal() >= Level.WARN.ordinal();
+        if (writer != null) {
+            snapshotArgs(args);
+            snapshotArgs(fields);
+            // Warnings and errors are written inline rather than dropped
+            if (writer.publish(event) || !important) {
+                return;
+            }
+        }
 
-        final String ts = LocalDateTime.now().format(TS);
-        final String thread = Thread.currentThread().getName();
-        final String caller = findCaller();
-        final String levelStr = level.name();
-        final String icon = levelIcon(level);
-        final String coloredLevel = USE_COLOR ? colorize(level, levelStr) : levelStr;
-        final String formatted = safeFormat(msg, args);
+        StringBuilder line = new StringBuilder(128);
+        format(event, line, USE_COLOR);
+        PrintStream stream = important ? System.err : System.out;
+        stream.print(line);
+    }
 
-        String line = String.format("%s %s [%s] (%s) %s", ts, icon, coloredLevel, thread + ":" + caller, formatted);
+    /**
+     * Appends the formatted line, and the stack trace if any, to {@code out}.
+     */
+    static void format(LogEvent event, StringBuilder out, boolean color) {
+        final String levelStr = event.level.name();
+        final String icon = levelIcon(event.level);
+        final String coloredLevel = color ? colorize(event.level, levelStr) : levelStr;
+        appendTimestamp(out, event.timeMillis);
+        out.append(' ').append(icon).append(" [").append(coloredLevel).append("] (")
+                .append(event.thread);
+        if (event.caller != null) {
+            out.append(':').append(event.caller);
+        }
+        out.append(") ").append(safeFormat(event.message, event.args));
+        for (int i = 0; i < event.getFieldCount(); i++) {
+            out.append(' ').append(event.getFieldKey(i)).append('=').append(event.getFieldValue(i));
+        }
+        out.append(System.lineSeparator());
+        if (event.throwable != null) {
+            out.append(stackTrace(event.throwable));
+        }
+    }
+
+    static String stackTrace(Throwable t) {
+        StringWriter trace = new StringWriter();
+        t.printStackTrace(new PrintWriter(trace));
+        return trace.toString();
+    }
+
+    private static void appendTimestamp(StringBuilder out, long timeMillis) {
+        long epochSecond = Math.floorDiv(timeMillis, 1000);
+        Second second = lastSecond;
+        if (second.epochSecond != epochSecond) {
+            second = new Second(epochSecond,
+                    LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZONE).format(TS));
+            lastSecond = second;
+        }
+        int millis = Math.floorMod(timeMillis, 1000);
+        out.append(second.text).append('.');
+        if (millis < 100) {
+            out.append('0');
+        }
+        if (millis < 10) {
+            out.append('0');
+        }
+        out.append(millis);
+    }
 
-        PrintStream stream = (level.ordinal() >= Level.WARN.ordinal()) ? System.err : System.out;
-        stream.println(line);
-        if (t != null) {
-            t.printStackTrace(stream);
+    // Arguments are formatted on the writer thread, freeze mutable ones now
+    private static void snapshotArgs(Object[] args) {
+        if (args == null) {
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg != null && !(arg instanceof String || arg instanceof Number || arg instanceof Boolean
+                    || arg instanceof Character || arg instanceof Enum<?>)) {
+                args[i] = String.valueOf(arg);
+            }
         }
     }
 
     private static String findCaller() {
         try {
-            // Skip 0: findCaller, 1: log, 2+: public wrappers
-            StackTraceElement[] st = Thread.currentThread().getStackTrace();
-            for (int i = 3; i < st.length; i++) {
-                String cls = st[i].getClassName();
-                if (!cls.equals(Log.class.getName())) {
-                    String method = st[i].getMethodName();
-                    return simpleClassName(cls) + "." + method;
-                }
-            }
+            return WALKER.walk(frames -> frames
+                    .limit(MAX_CALLER_DEPTH)
+                    .filter(frame -> !frame.getClassName().equals(Log.class.getName()))
+                    .findFirst()
+                    .map(frame -> simpleClassName(frame.getClassName()) + "." + frame.getMethodName())
+                    .orElse("?"));
         } catch (Throwable ignored) {
         }
         return "?";
@@ -123,7 +320,7 @@ public final class Log {
         return idx >= 0 ? fqcn.substring(idx + 1) : fqcn;
     }
 
-    private static String safeFormat(String msg, Object... args) {
+    static String safeFormat(String msg, Object... args) {
         try {
             return (args == null || args.length == 0) ? msg : String.format(Locale.ROOT, msg, args);
         } catch (Throwable e) {
@@ -170,6 +367,21 @@ public final class Log {
         return color + text + RESET;
     }
 
+    private static long parseLong(String value) {
+        return parseLong(value, 0);
+    }
+
+    private static long parseLong(String value, long fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
     private static Level resolveInitialLevel() {
         String env = System.getenv("LOG_LEVEL");
         if (env != null) {
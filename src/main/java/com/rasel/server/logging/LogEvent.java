@@ -0,0 +1,99 @@
+package com.rasel.server.logging;
+
+/**
+ * A log call captured on the calling thread, written later by a
+ * {@link LogSink}.
+ *
+ * Only what can't be recovered afterwards is captured: the time, the thread,
+ * the caller when enabled, the message template with its arguments and the
+ * key/value fields (see {@link Log} for how mutable values are handled).
+ * Nothing is formatted until a sink asks for it.
+ */
+public final class LogEvent {
+
+    private static final Object[] NONE = new Object[0];
+
+    final long timeMillis;
+    final Log.Level level;
+    final String thread;
+    final String caller;
+    final String message;
+    final Object[] args;
+    final Object[] fields;
+    final Throwable throwable;
+
+    LogEvent(long timeMillis, Log.Level level, String thread, String caller, String message, Object[] args,
+            Object[] fields, Throwable throwable) {
+        this.timeMillis = timeMillis;
+        this.level = level;
+        this.thread = thread;
+        this.caller = caller;
+        this.message = message;
+        this.args = args != null ? args : NONE;
+        this.fields = fields != null ? fields : NONE;
+        this.throwable = throwable;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public Log.Level getLevel() {
+        return level;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    /**
+     * @return "Class.method" of the logging code, or null if lookup is off
+     */
+    public String getCaller() {
+        return caller;
+    }
+
+    /**
+     * @return the message template, unformatted
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the number of arguments of the message template
+     */
+    public int getArgCount() {
+        return args.length;
+    }
+
+    public Object getArg(int index) {
+        return args[index];
+    }
+
+    /**
+     * @return the message with its arguments applied
+     */
+    public String getFormattedMessage() {
+        return Log.safeFormat(message, args);
+    }
+
+    /**
+     * @return the number of key/value fields
+     */
+    public int getFieldCount() {
+        return fields.length / 2;
+    }
+
+    public String getFieldKey(int index) {
+        return String.valueOf(fields[index * 2]);
+    }
+
+    public Object getFieldValue(int index) {
+        return fields[index * 2 + 1];
+    }
+
+    public Throwable getThrowable() {
+        return throwable;
+    }
+}
@@ -0,0 +1,30 @@
+package com.rasel.server.logging;
+
+import java.util.Locale;
+
+/**
+ * Record format of a {@link FileSink}.
+ */
+public enum LogFormat {
+    /** The console lines, without color. */
+    TEXT,
+    /** One JSON object per line, key/value fields as top level properties. */
+    JSON,
+    /** Length prefixed records holding the unformatted template, arguments and fields. */
+    BINARY;
+
+    /**
+     * @return the format named by {@code value} (case insensitive), or
+     *         {@code fallback} if there is none
+     */
+    public static LogFormat parse(String value, LogFormat fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+}
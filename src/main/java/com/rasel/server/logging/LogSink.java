@@ -0,0 +1,21 @@
+package com.rasel.server.logging;
+
+import java.io.IOException;
+
+/**
+ * Destination of the asynchronous {@link Log} writer.
+ *
+ * All methods are called from the single "log-writer" thread, so sinks need
+ * no locking. {@link #write(LogEvent)} may buffer, {@link #flush()} is called
+ * once per batch of events.
+ */
+public interface LogSink {
+
+    void write(LogEvent event) throws IOException;
+
+    default void flush() throws IOException {
+    }
+
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,93 @@
+package com.rasel.server.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ *
+ * Every slot carries a sequence number telling whether it is free for the
+ * producer claiming position {@code p} (sequence {@code p}) or holds the
+ * element of position {@code p} for the consumer (sequence {@code p + 1}).
+ * Producers claim a position with a CAS on the tail and then publish the slot
+ * with a release write, so {@link #offer(Object)} never blocks and fails fast
+ * when the buffer is full.
+ *
+ * @param <E> the element type
+ */
+final class RingBuffer<E> {
+
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Only touched by the consumer
+    private long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        items = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items[index] = element;
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                // Another producer took this position, retry with the current tail
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Consumer only.
+     *
+     * @return the oldest element, or null if there is none yet
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int index = (int) (head & mask);
+        if (sequences.getAcquire(index) != head + 1) {
+            return null;
+        }
+        E element = (E) items[index];
+        items[index] = null;
+        sequences.setRelease(index, head + items.length);
+        head++;
+        return element;
+    }
+
+    /**
+     * @return true if nothing was offered that is not yet polled, exact for
+     *         the consumer
+     */
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    int capacity() {
+        return items.length;
+    }
+}
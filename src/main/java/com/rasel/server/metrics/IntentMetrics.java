@@ -0,0 +1,45 @@
+package com.rasel.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.rasel.common.RequestIntent;
+
+/**
+ * Requests handled for one {@link RequestIntent}: how many, how many were
+ * answered with an error, and how long handling took in nanoseconds.
+ */
+public final class IntentMetrics {
+
+    private final RequestIntent intent;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Histogram latency = new Histogram();
+
+    IntentMetrics(RequestIntent intent) {
+        this.intent = intent;
+    }
+
+    void record(long nanos, boolean failed) {
+        count.increment();
+        if (failed) {
+            errors.increment();
+        }
+        latency.record(nanos);
+    }
+
+    public RequestIntent getIntent() {
+        return intent;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+}
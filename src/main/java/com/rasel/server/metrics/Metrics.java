@@ -0,0 +1,192 @@
+package com.rasel.server.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.rasel.common.RequestIntent;
+import com.rasel.server.logging.Log;
+
+/**
+ * Server wide metrics registry.
+ *
+ * Recording only touches striped counters ({@link LongAdder} and
+ * {@link Histogram}), no locks, so it stays on in production. Gauges are
+ * read when a report is made. {@link #startReporter(Duration)} logs a report
+ * periodically as key/value fields, one line per intent and one summary line.
+ */
+public final class Metrics {
+
+    private static final RequestIntent[] INTENTS = RequestIntent.values();
+    private static final IntentMetrics[] intents = new IntentMetrics[INTENTS.length];
+
+    static {
+        for (RequestIntent intent : INTENTS) {
+            intents[intent.ordinal()] = new IntentMetrics(intent);
+        }
+    }
+
+    private static final Histogram parseNanos = new Histogram();
+    private static final Histogram fanOut = new Histogram();
+    private static final LongAdder outboundBytes = new LongAdder();
+    private static final LongAdder outboundFrames = new LongAdder();
+    private static final LongAdder outboundWrites = new LongAdder();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    private static ScheduledExecutorService reporter;
+
+    private Metrics() {
+    }
+
+    /**
+     * @param nanos  time spent handling the request
+     * @param failed true if the client got an error or forbidden response
+     */
+    public static void recordRequest(RequestIntent intent, long nanos, boolean failed) {
+        intents[intent.ordinal()].record(nanos, failed);
+    }
+
+    /**
+     * @param nanos time spent decoding a complete frame into a request
+     */
+    public static void recordParse(long nanos) {
+        parseNanos.record(nanos);
+    }
+
+    /**
+     * @param recipients online members a message was sent to
+     */
+    public static void recordFanOut(int recipients) {
+        fanOut.record(recipients);
+    }
+
+    /**
+     * @param bytes  size of the frames fully written to a client
+     * @param frames number of frames
+     */
+    public static void recordOutbound(long bytes, int frames) {
+        outboundBytes.add(bytes);
+        outboundFrames.add(frames);
+    }
+
+    /**
+     * Count one flush or gathering write of a connection's outbound frames,
+     * compared to the frames it shows how well writes are coalesced.
+     */
+    public static void recordOutboundWrite() {
+        outboundWrites.increment();
+    }
+
+    /**
+     * Register (or replace) a value read at report time.
+     */
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public static IntentMetrics intent(RequestIntent intent) {
+        return intents[intent.ordinal()];
+    }
+
+    public static Histogram getParseNanos() {
+        return parseNanos;
+    }
+
+    public static Histogram getFanOut() {
+        return fanOut;
+    }
+
+    public static long getOutboundBytes() {
+        return outboundBytes.sum();
+    }
+
+    public static long getOutboundFrames() {
+        return outboundFrames.sum();
+    }
+
+    public static long getOutboundWrites() {
+        return outboundWrites.sum();
+    }
+
+    /**
+     * @return the current value of the gauge, or 0 if it isn't registered
+     */
+    public static long getGauge(String name) {
+        LongSupplier gauge = gauges.get(name);
+        return gauge != null ? gauge.getAsLong() : 0;
+    }
+
+    /**
+     * Log a report every {@code interval}, replacing a running reporter.
+     */
+    public static synchronized void startReporter(Duration interval) {
+        stopReporter();
+        if (!interval.isPositive()) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("metrics-reporter").daemon(true).factory());
+        long millis = interval.toMillis();
+        reporter.scheduleAtFixedRate(Metrics::report, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopReporter() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /**
+     * Log the totals since start: count, errors and latency percentiles in
+     * microseconds for every intent that was used, then the gauges, outbound
+     * traffic, fan-out and parse time.
+     */
+    public static void report() {
+        for (IntentMetrics metrics : intents) {
+            if (metrics.getCount() == 0) {
+                continue;
+            }
+            Histogram.Snapshot latency = metrics.getLatency().snapshot();
+            Log.event(Log.Level.INFO, "Request metrics",
+                    "intent", metrics.getIntent().name(),
+                    "count", metrics.getCount(),
+                    "errors", metrics.getErrors(),
+                    "p50Micros", micros(latency.getValueAtPercentile(50)),
+                    "p99Micros", micros(latency.getValueAtPercentile(99)),
+                    "p999Micros", micros(latency.getValueAtPercentile(99.9)),
+                    "maxMicros", micros(latency.getMax()));
+        }
+
+        Histogram.Snapshot parse = parseNanos.snapshot();
+        Histogram.Snapshot recipients = fanOut.snapshot();
+        List<Object> fields = new ArrayList<>();
+        gauges.forEach((name, gauge) -> {
+            fields.add(name);
+            fields.add(gauge.getAsLong());
+        });
+        Collections.addAll(fields,
+                "outboundBytes", outboundBytes.sum(),
+                "outboundFrames", outboundFrames.sum(),
+                "outboundWrites", outboundWrites.sum(),
+                "fanOutP50", recipients.getValueAtPercentile(50),
+                "fanOutP99", recipients.getValueAtPercentile(99),
+                "fanOutMax", recipients.getMax(),
+                "parseP50Micros", micros(parse.getValueAtPercentile(50)),
+                "parseP99Micros", micros(parse.getValueAtPercentile(99)),
+                "parseMaxMicros", micros(parse.getMax()));
+        Log.event(Log.Level.INFO, "Server metrics", fields.toArray());
+    }
+
+    private static double micros(long nanos) {
+        return Math.round(nanos / 100.0) / 10.0;
+    }
+}